@@ -0,0 +1,80 @@
+package org.explement.jde.benchmark;
+
+import org.explement.jde.model.CompilationResult;
+import org.explement.jde.service.CompilerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Compile and run latency, single shots since every call is milliseconds long
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class CompilerBenchmark {
+
+    private static final String CLASS_NAME = "Hello";
+
+    private Path directory;
+    private CompilerService compilerService;
+    private File javaFile;
+    private String cachedSource;
+    private int variant;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jde-bench-compile");
+        compilerService = new CompilerService(directory.resolve("build-cache")); // Never touches the user's cache
+        compilerService.prestartWorker();
+
+        javaFile = directory.resolve(CLASS_NAME + ".java").toFile();
+        cachedSource = Inputs.helloWorld(CLASS_NAME, -1);
+        Files.writeString(javaFile.toPath(), cachedSource);
+        compilerService.compile(CLASS_NAME, cachedSource);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // A source never seen before, always a real javac call
+    @Benchmark
+    public CompilationResult compileMiss() {
+        return compilerService.compile(CLASS_NAME, Inputs.helloWorld(CLASS_NAME, variant++));
+    }
+
+    // Unchanged source, served from the build cache
+    @Benchmark
+    public CompilationResult compileHit() {
+        return compilerService.compile(CLASS_NAME, cachedSource);
+    }
+
+    // Run from the editor, compile from the cache then run in the worker JVM
+    @Benchmark
+    public StringBuilder compileAndRun() throws IOException, InterruptedException {
+        return compilerService.compileAndRun(javaFile, cachedSource);
+    }
+}
@@ -0,0 +1,71 @@
+package org.explement.jde.benchmark;
+
+import org.explement.jde.model.FileContent;
+import org.explement.jde.model.FileFormat;
+import org.explement.jde.service.FileIOService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Loading and saving across file sizes, in LF and in CRLF with a BOM
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FileIOBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    @Param({"lf", "crlfBom"})
+    public String format;
+
+    private final FileIOService fileIOService = new FileIOService();
+    private Path directory;
+    private File file;
+    private String text;
+    private FileFormat fileFormat;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jde-bench-io");
+        file = directory.resolve("Generated.java").toFile();
+        text = Inputs.javaSource(size);
+        fileFormat = format.equals("lf") ? FileFormat.DEFAULT : new FileFormat(FileFormat.DEFAULT.charset(), true, "\r\n");
+        fileIOService.writeAtomically(file.toPath(), text, fileFormat);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public FileContent load() {
+        return fileIOService.loadFile(file);
+    }
+
+    // Includes the fsync and rename of the atomic save
+    @Benchmark
+    public void save() throws IOException {
+        fileIOService.writeAtomically(file.toPath(), text, fileFormat);
+    }
+}
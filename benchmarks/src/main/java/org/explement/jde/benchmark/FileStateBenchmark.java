@@ -0,0 +1,55 @@
+package org.explement.jde.benchmark;
+
+import org.explement.jde.model.FileState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Dirty tracking per keystroke, must not grow with the file size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FileStateBenchmark {
+
+    @Param({"4096", "1048576", "16777216"})
+    public int size;
+
+    private String saved;
+    private String edited;
+    private FileState fileState;
+
+    @Setup
+    public void setup() {
+        saved = Inputs.javaSource(size);
+        int middle = saved.length() / 2;
+        edited = saved.substring(0, middle) + "x" + saved.substring(middle);
+        fileState = new FileState(saved);
+    }
+
+    @Benchmark
+    public boolean isDirty() {
+        return fileState.isDirty();
+    }
+
+    // Typing a character and deleting it again, the second edit verifies the text is clean
+    @Benchmark
+    public boolean typeAndUndo() {
+        int middle = saved.length() / 2;
+        fileState.edit(middle, 1, edited.length(), edited::substring);
+        fileState.edit(middle, 0, saved.length(), saved::substring);
+        return fileState.isDirty();
+    }
+}
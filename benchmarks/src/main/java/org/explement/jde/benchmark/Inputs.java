@@ -0,0 +1,63 @@
+package org.explement.jde.benchmark;
+
+// Deterministic sources, so every run measures the same text
+final class Inputs {
+
+    private Inputs() {} // Create private constructor
+
+    private static final String CLASS_TEMPLATE = """
+            package demo;
+
+            import java.util.ArrayList;
+            import java.util.List;
+
+            /* Generated class %d */
+            public class Generated%d {
+                private static final int LIMIT = 0x%X;
+                private final List<String> names = new ArrayList<>();
+
+                @Override
+                public String toString() {
+                    return "Generated%d{" + names.size() + '}'; // Line comment
+                }
+
+                public double sum(int[] values) {
+                    double total = 1.5e3;
+                    for (int i = 0; i < values.length && i < LIMIT; i++) {
+                        total += values[i] * 2.0f;
+                    }
+                    return total;
+                }
+            }
+            """;
+
+    // Realistic Java source of roughly the given number of chars
+    static String javaSource(int chars) {
+        StringBuilder source = new StringBuilder(chars + CLASS_TEMPLATE.length() * 2);
+        for (int i = 0; source.length() < chars; i++) {
+            source.append(CLASS_TEMPLATE.formatted(i, i, i * 31, i));
+        }
+        return source.toString();
+    }
+
+    // One comment spanning the whole text
+    static String blockComment(int chars) {
+        return "/*" + "comment text ".repeat(chars / 13) + "*/\n";
+    }
+
+    // One string literal on a single very long line
+    static String longString(int chars) {
+        return "String s = \"" + "abc \\\" def ".repeat(chars / 11) + "\";\n";
+    }
+
+    // A program that prints a little and exits
+    static String helloWorld(String className, int variant) {
+        return """
+                public class %s {
+                    public static void main(String[] args) {
+                        System.out.println("Hello %d");
+                    }
+                }
+                """.formatted(className, variant);
+    }
+}
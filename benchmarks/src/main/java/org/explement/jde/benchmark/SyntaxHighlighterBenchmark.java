@@ -0,0 +1,50 @@
+package org.explement.jde.benchmark;
+
+import org.explement.jde.service.SyntaxHighlighterService;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// Whole-document highlighting, what a full restyle or a file load costs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SyntaxHighlighterBenchmark {
+
+    @Param({"small", "large", "blockComment", "longString"})
+    public String input;
+
+    private final SyntaxHighlighterService highlighter = new SyntaxHighlighterService();
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = switch (input) {
+            case "small" -> Inputs.javaSource(4 * 1024);
+            case "large" -> Inputs.javaSource(2 * 1024 * 1024);
+            case "blockComment" -> Inputs.blockComment(1024 * 1024);
+            case "longString" -> Inputs.longString(1024 * 1024);
+            default -> throw new IllegalArgumentException(input);
+        };
+    }
+
+    @Benchmark
+    public StyleSpans<Collection<String>> computeHighlighting() {
+        return highlighter.computeHighlighting(text);
+    }
+}
@@ -3,9 +3,13 @@ module org.explement.jde {
     requires javafx.fxml;
     requires org.fxmisc.richtext;
     requires org.fxmisc.flowless;
+    requires reactfx; // EventStream of plainTextChanges, used directly
     requires java.desktop;
     requires org.fxmisc.undo;
     requires javafx.graphics;
+    requires java.compiler;
+    requires jdk.jfr; // Custom flight recorder events
+    requires jdk.compiler; // Keeps javac in the jlinked image for in-process compilation
 
 
     opens org.explement.jde to javafx.fxml;
@@ -1,6 +1,7 @@
 package org.explement.jde;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
@@ -9,19 +10,32 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import org.explement.jde.controller.MainController;
+import org.explement.jde.metrics.Metrics;
+import org.explement.jde.metrics.StartupEvent;
 import org.explement.jde.util.AlertUtils;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class Main extends Application {
     @Override
     public void start(Stage stage) throws IOException {
+        long startNanos = System.nanoTime();
+        // Process start in System.nanoTime() terms, so the JVM and JavaFX boot count too
+        long launchNanos = startNanos - ProcessHandle.current().info().startInstant()
+                .map(launched -> (Instant.now().toEpochMilli() - launched.toEpochMilli()) * 1_000_000)
+                .orElse(0L);
+
+        // The font loads while the FXML builds the scene, the first frame needs both
+        CompletableFuture<Font> font = CompletableFuture.supplyAsync(() -> Font.loadFont(Main.class.getResourceAsStream("JetBrainsMono-Regular.ttf"), 12));
+
         FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("main.fxml"));
         Scene scene = new Scene(fxmlLoader.load());
-
         scene.getStylesheets().add(Main.class.getResource("style.css").toExternalForm());
-        Font.loadFont(Main.class.getResourceAsStream("JetBrainsMono-Regular.ttf"), 12);
+        font.join();
+        long sceneNanos = System.nanoTime();
 
         MainController controller = fxmlLoader.getController();
 
@@ -42,14 +56,40 @@ public class Main extends Application {
                 result.ifPresent(type -> {
                     if (type == saveAndExit) { // Save and exit
                         controller.saveFile();
+                        controller.awaitSaves(); // Saves run in the background
+                    } else if (type == exitWithoutSaving) { // Exit without saving
+                        controller.discardJournal();
                     } else if (type == cancel) { // Cancel
                         event.consume();
                     }
-                    // Exit without saving (no exceptions)
                 });
             }
+
+            if (!event.isConsumed()) controller.flushJournal(); // Other tabs' unsaved edits survive the exit
         });
 
+        // Once the first frame is laid out, record the time to it and let the deferred startup work begin
+        Runnable firstFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                long now = System.nanoTime();
+                Metrics.histogram(Metrics.STARTUP).record(now - launchNanos);
+                StartupEvent event = new StartupEvent();
+                event.launch = startNanos - launchNanos;
+                event.scene = sceneNanos - startNanos;
+                event.firstFrame = now - launchNanos;
+                event.commit();
+
+                if (Boolean.getBoolean("jde.exitAfterFirstFrame")) { // CDS training run, see the cds profile in pom.xml
+                    Platform.exit();
+                    return;
+                }
+                Platform.runLater(() -> controller.startupFinished((now - launchNanos) / 1_000_000, (sceneNanos - startNanos) / 1_000_000));
+            }
+        };
+        scene.addPostLayoutPulseListener(firstFrame);
+
         stage.setScene(scene);
         stage.show();
     }
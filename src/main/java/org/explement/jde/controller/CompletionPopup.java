@@ -0,0 +1,167 @@
+package org.explement.jde.controller;
+
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.stage.Popup;
+import org.explement.jde.model.Completion;
+import org.explement.jde.service.CompletionService;
+import org.fxmisc.richtext.CodeArea;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Completion list under the caret, opened with Ctrl+Space or by typing an identifier, narrowed as typing goes on
+// The list never takes focus: keys reach the editor, which only gives up Up, Down, Enter, Tab and Escape while it shows
+public class CompletionPopup {
+
+    private static final int MAX_SUGGESTIONS = 50;
+    // Identifier chars typed before the list opens by itself
+    private static final int AUTO_PREFIX = 2;
+
+    private final CodeArea codeArea;
+    private final Supplier<CompletionService> completionService;
+    private final Runnable beforeComplete;
+    private final Popup popup = new Popup();
+    private final ListView<Completion> list = new ListView<>();
+    // The next text change comes from a typed identifier char
+    private boolean typed;
+    // A refresh is waiting for the caret to settle
+    private boolean refreshQueued;
+
+    // beforeComplete brings the symbol index up to date with the edited tab
+    public CompletionPopup(CodeArea codeArea, Supplier<CompletionService> completionService, Runnable beforeComplete) {
+        this.codeArea = codeArea;
+        this.completionService = completionService;
+        this.beforeComplete = beforeComplete;
+
+        list.setId("completions");
+        list.setFocusTraversable(false);
+        list.setPrefSize(460, 220);
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(Completion completion, boolean empty) {
+                super.updateItem(completion, empty);
+                setText(empty || completion == null ? null : completion.toString());
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) accept(list.getSelectionModel().getSelectedItem());
+        });
+        popup.getContent().add(list);
+        popup.setAutoHide(true);
+
+        codeArea.addEventFilter(KeyEvent.KEY_TYPED, e -> typed = !e.getCharacter().isEmpty()
+                && Character.isJavaIdentifierPart(e.getCharacter().charAt(0)) && !e.isControlDown() && !e.isMetaDown());
+        codeArea.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (!popup.isShowing()) return;
+            switch (e.getCode()) {
+                case UP -> move(-1);
+                case DOWN -> move(1);
+                case ENTER, TAB -> accept(list.getSelectionModel().getSelectedItem());
+                case ESCAPE -> hide();
+                default -> { return; }
+            }
+            e.consume();
+        });
+        codeArea.plainTextChanges().subscribe(change -> {
+            boolean identifier = typed && change.getInserted().length() == 1 && change.getRemoved().isEmpty();
+            typed = false;
+            if (identifier || popup.isShowing()) queueRefresh();
+        });
+        codeArea.caretPositionProperty().addListener((obs, oldPosition, newPosition) -> {
+            if (popup.isShowing()) queueRefresh();
+        });
+    }
+
+    // Opens the list for the identifier at the caret, even with nothing typed yet
+    public void show() {
+        refresh(true);
+    }
+
+    public void hide() {
+        popup.hide();
+    }
+
+    // After the edit and caret move of a keystroke are both done, once
+    private void queueRefresh() {
+        if (refreshQueued) return;
+        refreshQueued = true;
+        Platform.runLater(() -> {
+            refreshQueued = false;
+            refresh(false);
+        });
+    }
+
+    // Suggestions for the identifier before the caret, explicit when asked for with Ctrl+Space
+    private void refresh(boolean explicit) {
+        String line = codeArea.getParagraph(codeArea.getCurrentParagraph()).getText();
+        int column = codeArea.getCaretColumn();
+        int wordStart = wordStart(line, column);
+        String prefix = line.substring(wordStart, column);
+
+        boolean opening = !popup.isShowing() && !explicit;
+        if (!prefix.isEmpty() && !Character.isJavaIdentifierStart(prefix.charAt(0))
+                || opening && (prefix.length() < AUTO_PREFIX || inCommentOrString())
+                || popup.isShowing() && !explicit && prefix.isEmpty()) {
+            hide();
+            return;
+        }
+
+        beforeComplete.run();
+        boolean member = wordStart > 0 && line.charAt(wordStart - 1) == '.';
+        List<Completion> completions = completionService.get().complete(prefix, member, MAX_SUGGESTIONS);
+        if (completions.isEmpty()) {
+            hide();
+            return;
+        }
+
+        list.getItems().setAll(completions);
+        list.getSelectionModel().selectFirst();
+        list.scrollTo(0);
+        if (!popup.isShowing()) {
+            Bounds caret = codeArea.getCaretBounds().orElse(null);
+            if (caret == null) return; // Caret scrolled out of view
+            if (codeArea.getScene() != null) popup.getScene().getStylesheets().setAll(codeArea.getScene().getStylesheets());
+            popup.show(codeArea, caret.getMinX(), caret.getMaxY());
+        }
+    }
+
+    // Replaces the identifier before the caret, a method gets its parentheses with the caret between them
+    private void accept(Completion completion) {
+        if (completion == null) return;
+        hide();
+        String line = codeArea.getParagraph(codeArea.getCurrentParagraph()).getText();
+        int column = codeArea.getCaretColumn();
+        int caret = codeArea.getCaretPosition();
+        int start = caret - (column - wordStart(line, column));
+
+        codeArea.replaceText(start, caret, completion.isCallable() ? completion.name() + "()" : completion.name());
+        if (completion.isCallable()) codeArea.moveTo(start + completion.name().length() + 1);
+        codeArea.requestFollowCaret();
+    }
+
+    private void move(int by) {
+        int index = Math.clamp(list.getSelectionModel().getSelectedIndex() + by, 0, list.getItems().size() - 1);
+        list.getSelectionModel().select(index);
+        list.scrollTo(Math.max(0, index - 3));
+    }
+
+    // Typing in comments and strings does not open the list, Ctrl+Space still does
+    private boolean inCommentOrString() {
+        int caret = codeArea.getCaretPosition();
+        if (caret == 0) return false;
+        Collection<String> styles = codeArea.getStyleOfChar(caret - 1);
+        return styles.contains("comment") || styles.contains("string");
+    }
+
+    private static int wordStart(String line, int column) {
+        int start = column;
+        while (start > 0 && Character.isJavaIdentifierPart(line.charAt(start - 1))) start--;
+        return start;
+    }
+}
@@ -0,0 +1,90 @@
+package org.explement.jde.controller;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.control.ContextMenu;
+import org.explement.jde.model.ConsoleBuffer;
+import org.fxmisc.flowless.VirtualizedScrollPane;
+import org.fxmisc.richtext.StyleClassedTextArea;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Virtualized, line-capped console that can be written to from any thread
+public class ConsoleView {
+
+    private final StyleClassedTextArea area = new StyleClassedTextArea();
+    private final VirtualizedScrollPane<StyleClassedTextArea> scrollPane = new VirtualizedScrollPane<>(area);
+    // Text written since the last frame, holds at most maxLines lines
+    private final ConsoleBuffer buffer;
+    private final int maxLines;
+    // At most one update per frame, however fast programs print, and no frames at all while nothing is written
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+    // The timer runs or is about to start
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ConsoleView(int maxLines) {
+        this.maxLines = maxLines;
+        this.buffer = new ConsoleBuffer(maxLines);
+
+        area.setEditable(false);
+        area.setId("console");
+    }
+
+    public Node getNode() {
+        return scrollPane;
+    }
+
+    public void setPrefHeight(double height) {
+        scrollPane.setPrefHeight(height);
+    }
+
+    public void setContextMenu(ContextMenu contextMenu) {
+        area.setContextMenu(contextMenu);
+    }
+
+    // Safe to call from any thread, shown on the next frame
+    public void append(String text) {
+        buffer.append(text);
+        if (running.compareAndSet(false, true)) Platform.runLater(timer::start);
+    }
+
+    public void clear() {
+        buffer.clear();
+        area.clear();
+    }
+
+    public void copy() { area.copy(); }
+
+    public void selectAll() { area.selectAll(); }
+
+    private void flush() {
+        if (buffer.isEmpty()) {
+            timer.stop();
+            running.set(false);
+            // Text appended before the flag dropped did not start the timer
+            if (!buffer.isEmpty() && running.compareAndSet(false, true)) timer.start();
+            return;
+        }
+
+        StringBuilder text = new StringBuilder();
+        long dropped = buffer.drainTo(text);
+        if (dropped > 0) {
+            text.insert(0, "... " + dropped + " lines skipped ...\n");
+        }
+        area.appendText(text.toString());
+
+        // Drop the oldest lines so memory stays flat
+        int excess = area.getParagraphs().size() - maxLines;
+        if (excess > 0) {
+            area.deleteText(0, area.getAbsolutePosition(excess, 0));
+        }
+
+        area.showParagraphAtBottom(area.getParagraphs().size() - 1); // Scroll to bottom
+    }
+}
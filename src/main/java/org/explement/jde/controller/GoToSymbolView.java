@@ -0,0 +1,85 @@
+package org.explement.jde.controller;
+
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.explement.jde.service.SymbolIndexService;
+
+import java.util.function.Consumer;
+
+// "Go to Symbol" window, filters the declarations of all open tabs as you type, Enter opens the selected one
+public class GoToSymbolView {
+
+    private static final int MAX_MATCHES = 200;
+
+    private final SymbolIndexService symbolIndex;
+    private final Runnable beforeSearch;
+    private final Consumer<SymbolIndexService.Match> onOpen;
+    private final Stage stage = new Stage();
+    private final TextField queryField = new TextField();
+    private final ListView<SymbolIndexService.Match> results = new ListView<>();
+
+    // beforeSearch brings the index up to date with the edited tab
+    public GoToSymbolView(SymbolIndexService symbolIndex, Window owner, Runnable beforeSearch, Consumer<SymbolIndexService.Match> onOpen) {
+        this.symbolIndex = symbolIndex;
+        this.beforeSearch = beforeSearch;
+        this.onOpen = onOpen;
+
+        queryField.setPromptText("Symbol name");
+        queryField.textProperty().addListener((obs, oldText, newText) -> search());
+        queryField.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.DOWN) {
+                results.requestFocus();
+                results.getSelectionModel().selectFirst();
+            } else if (e.getCode() == KeyCode.ENTER) {
+                open(results.getItems().isEmpty() ? null : results.getItems().get(0));
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                stage.hide();
+            }
+        });
+
+        results.setId("symbolResults");
+        results.setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) open(results.getSelectionModel().getSelectedItem());
+        });
+        results.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) open(results.getSelectionModel().getSelectedItem());
+            else if (e.getCode() == KeyCode.ESCAPE) stage.hide();
+        });
+
+        BorderPane root = new BorderPane(results);
+        root.setTop(queryField);
+        BorderPane.setMargin(queryField, new Insets(4));
+
+        Scene scene = new Scene(root, 500, 350);
+        if (owner != null && owner.getScene() != null) scene.getStylesheets().addAll(owner.getScene().getStylesheets());
+        stage.setScene(scene);
+        stage.setTitle("Go to Symbol");
+        stage.initOwner(owner);
+    }
+
+    public void show() {
+        queryField.clear();
+        search();
+        stage.show();
+        stage.toFront();
+        queryField.requestFocus();
+    }
+
+    private void search() {
+        beforeSearch.run();
+        results.getItems().setAll(symbolIndex.search(queryField.getText().trim(), MAX_MATCHES));
+    }
+
+    private void open(SymbolIndexService.Match match) {
+        if (match == null) return;
+        stage.hide();
+        onOpen.accept(match);
+    }
+}
@@ -0,0 +1,170 @@
+package org.explement.jde.controller;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.explement.jde.service.MappedTextFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Read-only window for files too big for the editor, only the lines on screen are decoded
+// No highlighting, go to line and plain text search run over the mapped bytes
+public class LargeFileViewer {
+
+    private final MappedTextFile file;
+    private final Stage stage = new Stage();
+    private final Lines lines = new Lines();
+    private final ListView<Integer> listView = new ListView<>(lines);
+    private final Label status = new Label();
+    private final TextField lineField = new TextField();
+    private final TextField searchField = new TextField();
+
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "large-file-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingSearch;
+    // Byte offset the next search starts from
+    private long searchFrom;
+
+    public LargeFileViewer(MappedTextFile file, Window owner) {
+        this.file = file;
+
+        listView.setId("largeFileView");
+        listView.setFixedCellSize(20); // Lets the list size millions of rows without measuring them
+        listView.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(Integer line, boolean empty) {
+                super.updateItem(line, empty);
+                setText(empty || line == null ? null : (line + 1) + "  " + file.line(line));
+            }
+        });
+
+        lineField.setPromptText("Line");
+        lineField.setPrefColumnCount(8);
+        lineField.setOnAction(e -> goToLine());
+
+        searchField.setPromptText("Find");
+        searchField.setOnAction(e -> findNext());
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchFrom = 0); // New text, search from the top
+        Button findButton = new Button("Find Next");
+        findButton.setOnAction(e -> findNext());
+
+        HBox toolbar = new HBox(6, lineField, searchField, findButton, status);
+        toolbar.setPadding(new Insets(4));
+
+        BorderPane root = new BorderPane(listView);
+        root.setTop(toolbar);
+
+        Scene scene = new Scene(root, 900, 600);
+        if (owner != null && owner.getScene() != null) scene.getStylesheets().addAll(owner.getScene().getStylesheets());
+        stage.setScene(scene);
+        stage.setTitle(file.getPath().getFileName() + " (read-only)");
+        stage.setOnHidden(e -> close());
+
+        file.startIndexing(() -> Platform.runLater(this::refresh));
+        refresh();
+    }
+
+    public void show() {
+        stage.show();
+    }
+
+    // Picks up the lines indexed since the last refresh
+    private void refresh() {
+        lines.grow(file.lineCount());
+        status.setText(String.format("%,d lines%s, %,d KB", file.lineCount(), file.isIndexed() ? "" : " so far", file.size() / 1024));
+    }
+
+    private void goToLine() {
+        try {
+            int line = Integer.parseInt(lineField.getText().trim()) - 1;
+            if (line < 0 || line >= lines.size()) {
+                status.setText(file.isIndexed() ? "No such line" : "Line not indexed yet");
+                return;
+            }
+            showLine(line);
+        } catch (NumberFormatException e) {
+            status.setText("Invalid line: " + lineField.getText());
+        }
+    }
+
+    private void findNext() {
+        String text = searchField.getText();
+        if (text.isEmpty()) return;
+        if (pendingSearch != null) pendingSearch.cancel(true);
+
+        byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        long from = searchFrom;
+        status.setText("Searching...");
+        pendingSearch = searchExecutor.submit(() -> {
+            long found = file.find(needle, from);
+            if (Thread.currentThread().isInterrupted()) return; // A newer search replaced this one
+
+            Platform.runLater(() -> {
+                if (found < 0) {
+                    status.setText(from == 0 ? "Not found" : "No more matches");
+                    searchFrom = 0; // Wrap around on the next search
+                    return;
+                }
+                searchFrom = found + 1;
+                int line = file.lineOf(found);
+                if (line < 0 || line >= lines.size()) {
+                    status.setText(String.format("Found at byte %,d, not indexed yet", found));
+                    return;
+                }
+                status.setText("Found on line " + (line + 1));
+                showLine(line);
+            });
+        });
+    }
+
+    private void showLine(int line) {
+        listView.scrollTo(Math.max(0, line - 3)); // A few lines of context above
+        listView.getSelectionModel().select(line);
+    }
+
+    private void close() {
+        if (pendingSearch != null) pendingSearch.cancel(true);
+        searchExecutor.shutdownNow();
+        file.close();
+    }
+
+    // Line numbers as list items, without boxing one object per line up front
+    private static class Lines extends ObservableListBase<Integer> {
+        private int size;
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        void grow(int newSize) {
+            if (newSize <= size) return;
+            beginChange();
+            nextAdd(size, newSize);
+            size = newSize;
+            endChange();
+        }
+    }
+}
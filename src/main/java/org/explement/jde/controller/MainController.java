@@ -1,30 +1,64 @@
 package org.explement.jde.controller;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
+import org.explement.jde.metrics.Metrics;
+import org.explement.jde.metrics.TabSwitchEvent;
+import org.explement.jde.metrics.TypingLatencyEvent;
+import org.explement.jde.model.FileContent;
+import org.explement.jde.model.FileFormat;
 import org.explement.jde.model.FileState;
+import org.explement.jde.model.ProjectBuildResult;
+import org.explement.jde.model.SearchHit;
 import org.explement.jde.service.CompilerService;
+import org.explement.jde.service.CompletionService;
+import org.explement.jde.service.DiagnosticsService;
 import org.explement.jde.service.FileIOService;
+import org.explement.jde.service.FileWatcherService;
+import org.explement.jde.service.HighlightingPipeline;
+import org.explement.jde.service.JournalService;
+import org.explement.jde.service.MappedTextFile;
+import org.explement.jde.service.NestingIndex;
+import org.explement.jde.service.ProgramRun;
+import org.explement.jde.service.ProjectBuildService;
+import org.explement.jde.service.SaveService;
+import org.explement.jde.service.SymbolIndexService;
 import org.explement.jde.service.SyntaxHighlighterService;
+import org.explement.jde.service.TabCache;
+import org.explement.jde.service.TrigramIndexService;
 import org.explement.jde.util.AlertUtils;
 import org.explement.jde.util.FileChooserUtils;
+import org.explement.jde.util.MergeUtils;
 import org.explement.jde.util.RegexUtils;
 import org.explement.jde.util.TimeUtils;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 
-import org.fxmisc.richtext.LineNumberFactory;
 import org.fxmisc.undo.UndoManager;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,7 +67,16 @@ public class MainController {
     // Services
     private final SyntaxHighlighterService highlighterService = new SyntaxHighlighterService();
     private final FileIOService fileIOService = new FileIOService();
-    private final CompilerService compilerService = new CompilerService();
+    // Created on first use through their getters, none of them is needed for the first frame
+    private SaveService saveService;
+    private JournalService journalService;
+    private SymbolIndexService symbolIndex;
+    private CompletionService completionService;
+    private CompilerService compilerService;
+    private FileWatcherService fileWatcher;
+    private TrigramIndexService indexService;
+    private ProjectBuildService projectBuilder;
+    private DiagnosticsService diagnosticsService;
 
     // Enum for promptSaveFile()
     enum promptUserChoice {
@@ -44,36 +87,84 @@ public class MainController {
 
     // JavaFX Objects
     private CodeArea codeArea;
-    public TextArea output;
+    public ConsoleView output;
+    private final MetricsOverlay metricsOverlay = new MetricsOverlay();
+    private ProjectSearchView projectSearchView;
+    private GoToSymbolView goToSymbolView;
+    private final OutlineView outline = new OutlineView(this::moveToOffset);
+    private ProblemsView problemsView;
+    private final NestingIndex nestingIndex = new NestingIndex();
+    private NestingView nestingView;
+    private CompletionPopup completionPopup;
+    private Tab problemsTab;
     @FXML private VBox mainVBox;
     @FXML private HBox navigationBar;
+    @FXML private RadioMenuItem autosaveItem;
+    @FXML private RadioMenuItem metricsItem;
+    @FXML private RadioMenuItem outlineItem;
 
     // File being edited absolute path
     private String editedFile;
+    // Folder chosen with Load Folder, null until then
+    private Path projectRoot;
+    // Classes with a main method found by the last project build, and the one Run Project starts
+    private List<String> projectMainClasses = List.of();
+    private String projectMainClass;
     // Compile WHITESPACE_Pattern from RegexUtils
     private static final Pattern whiteSpace = Pattern.compile(RegexUtils.WHITESPACE_PATTERN);
     // Enable highlight check
     private final boolean highlightChecker = true;
+    // Check the edited tab with javac in the background while typing
+    private final boolean liveDiagnostics = true;
+    // Only re-highlight the edited paragraphs instead of the whole document
+    private final boolean incrementalHighlighting = true;
+    // Documents with more paragraphs are only styled around the viewport, lazily as it scrolls
+    private final int viewportHighlightingThreshold = 5_000;
+    // Files at least this big open in a read-only, memory-mapped viewer instead of a tab
+    private final long largeFileThreshold = 32L * 1024 * 1024;
+    // Debounced background highlighting
+    private HighlightingPipeline highlightingPipeline;
     // Undo manager for CodeArea
     private UndoManager<?> undoManager;
+    // Bytes of background tab text kept on the heap before tabs are dropped, compressed or spilled
+    private final long tabCacheBudget = 64L * 1024 * 1024;
     // File cache (avoid loading each time)
-    Map<String, FileState> fileCache = new HashMap<>();
+    TabCache fileCache = new TabCache(tabCacheBudget, fileIOService);
     // Number counter for default name (unnamed_file.java)
     private int unnamedIndex = 0;
-    // Current edited file's content
-    private String currentContent;
-    // Tracker for currentContent
+    // Record edits into the tab's FileState, off while swapping tab contents
     private boolean currentContentTracker = true;
     // All the navigation buttons
     private final Map<String, Button> navButtons = new HashMap<>();
+    // Programs still running, by the path of the tab that started them
+    private final Map<String, ProgramRun> runningPrograms = new HashMap<>();
+    // Most lines the console keeps, older ones are dropped
+    private final int consoleLineCap = 10_000;
+    // Wall-clock limit for a single run
+    private Duration runTimeout = Duration.ofSeconds(30);
+    // Seconds between autosaves of dirty tabs, while Autosave is checked
+    private final int autosaveSeconds = 30;
+    private Timeline autosaveTimeline;
+    // Quiet time after an edit before the outline catches up
+    private final PauseTransition outlineRefresh = new PauseTransition(javafx.util.Duration.millis(300));
+    // Quiet time after an edit before the next diagnostics pass, set from the service before each wait
+    private final PauseTransition diagnosticsDelay = new PauseTransition();
+    // Set once the first frame is shown, diagnostics wait for it so javac is not looked up before then
+    private boolean startupDone;
+    // Keystroke-to-render latency, when the last key was typed and when the oldest unstyled edit was typed (0 when none)
+    private long lastKeyTypedNanos;
+    private long pendingKeystrokeNanos;
+    private boolean keystrokeStyled;
 
     @FXML
     private void initialize() {
         codeArea = new CodeArea();
-        output = new TextArea();
+        output = new ConsoleView(consoleLineCap);
+        problemsView = new ProblemsView(codeArea, this::moveToOffset);
+        nestingView = new NestingView(codeArea, nestingIndex);
+        completionPopup = new CompletionPopup(codeArea, this::completionService, () -> symbolIndex().refresh(editedFile, codeArea::getText));
 
         undoManager = codeArea.getUndoManager();
-        output.setEditable(false);
 
         ContextMenu contextMenu = new ContextMenu();
 
@@ -91,38 +182,78 @@ public class MainController {
         contextMenu.getItems().addAll(clearItem, copyItem, separatorMenuItem, selectAllItem);
         output.setContextMenu(contextMenu);
 
-        codeArea.setParagraphGraphicFactory(LineNumberFactory.get(codeArea));
+        codeArea.setParagraphGraphicFactory(nestingView::gutter);
         codeArea.setId("codeArea");
 
         VirtualizedScrollPane<CodeArea> scrollPane = new VirtualizedScrollPane<>(codeArea);
+        StackPane editorPane = new StackPane(scrollPane, metricsOverlay.getNode());
+        HBox.setHgrow(editorPane, Priority.ALWAYS);
+        HBox editorRow = new HBox(editorPane, outline.getNode());
 
-        mainVBox.getChildren().addAll(scrollPane, output);
+        problemsTab = new Tab("Problems", problemsView.getNode());
+        TabPane bottomPane = new TabPane(new Tab("Console", output.getNode()), problemsTab);
+        bottomPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+
+        mainVBox.getChildren().addAll(editorRow, bottomPane);
 
         mainVBox.heightProperty().addListener((obs, oldVal, newVal) -> {
             double height = newVal.doubleValue();
-            scrollPane.setPrefHeight(height * 0.7);
-            output.setPrefHeight(height * 0.3);
+            editorRow.setPrefHeight(height * 0.7);
+            bottomPane.setPrefHeight(height * 0.3);
         });
 
+        outlineRefresh.setOnFinished(e -> updateOutline());
+        diagnosticsDelay.setOnFinished(e -> runDiagnostics());
+
         newJavaFile(); // Create before the listener
 
-        codeArea.textProperty().addListener((obs, oldText, newText) -> {
+        codeArea.plainTextChanges().subscribe(problemsView::onTextChange); // Every change, so underlines never drift
+        codeArea.plainTextChanges().subscribe(nestingView::onTextChange);
+        codeArea.caretPositionProperty().addListener((obs, oldPosition, newPosition) -> nestingView.queueUpdate());
+        // Per edit, not per full text, so typing costs the same in any file size
+        codeArea.plainTextChanges().subscribe(change -> {
             FileState fileState = fileCache.get(editedFile);
-            if (fileState == null) {
+            if (fileState == null || !currentContentTracker) {
                 return;
             }
 
-            if (currentContentTracker) {
-                currentContent = newText;
-                fileState.setContent(newText);
+            long start = System.nanoTime();
+            if (lastKeyTypedNanos != 0) { // This edit came from the keyboard
+                if (pendingKeystrokeNanos == 0) pendingKeystrokeNanos = lastKeyTypedNanos;
+                keystrokeStyled = false;
+                lastKeyTypedNanos = 0;
+            }
+
+            fileState.edit(change.getPosition(), change.getInserted().length(), codeArea.getLength(), codeArea::getText);
+            symbolIndex().edit(editedFile, change.getPosition(), change.getRemoved().length(), change.getInserted().length());
+            if (outline.isShowing()) outlineRefresh.playFromStart();
+            scheduleDiagnostics();
+            if (fileState.isDirty()) {
+                journalService().record(editedFile, change.getPosition(), change.getRemoved().length(), change.getInserted(), codeArea::getText);
+            } else {
+                journalService().discard(editedFile); // Back to the saved text
             }
 
             Button button = navButtons.get(editedFile);
             dirtyMarkerCheck(fileState, button);
+            Metrics.record(Metrics.EDIT_TRACKING, start);
+        });
 
-            if (highlightChecker) {
-                updateSyntaxHighlighting(newText);
-            }
+        if (highlightChecker) {
+            highlightingPipeline = new HighlightingPipeline(codeArea, highlighterService, incrementalHighlighting, viewportHighlightingThreshold);
+            highlightingPipeline.setOnStyled(() -> {
+                keystrokeStyled = true;
+                nestingView.refresh(); // The index has caught up with the edit
+            });
+            // Restyled paragraphs keep their underlines and bracket highlight
+            highlightingPipeline.setDecorator((paragraph, spans) -> nestingView.decorate(paragraph, problemsView.decorate(paragraph, spans)));
+            if (incrementalHighlighting) highlightingPipeline.setNestingIndex(nestingIndex); // Brackets come from the same lexing pass
+            codeArea.plainTextChanges().subscribe(highlightingPipeline::onTextChange);
+        }
+
+        codeArea.addEventFilter(KeyEvent.KEY_TYPED, e -> lastKeyTypedNanos = System.nanoTime());
+        mainVBox.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene != null) scene.addPostLayoutPulseListener(this::recordTypingLatency);
         });
 
         codeArea.setOnKeyPressed(keyEvent -> {
@@ -153,6 +284,7 @@ public class MainController {
     }
 
     private void newJavaFile() {
+        snapshotEditedFile();
         if (unnamedIndex == 0) {
             editedFile = "unnamed_file.java";
             unnamedIndex=1;
@@ -164,7 +296,9 @@ public class MainController {
         codeArea.clear();
         newNavBarButton(editedFile);
 
-        fileCache.put(editedFile, new FileState("", ""));
+        fileCache.put(editedFile, new FileState(""));
+        symbolIndex().index(editedFile, "");
+        refreshTabViews();
     }
 
     private promptUserChoice promptSaveFile() {
@@ -195,43 +329,110 @@ public class MainController {
 
     @FXML
     public void saveFile() {
+        save();
+    }
+
+    // Completes once the edited file is on disk, or at once if there is nothing to save
+    private CompletableFuture<?> save() {
         FileState fileState = fileCache.get(editedFile);
-        if (!fileState.isDirty()) return;
+        if (!fileState.isDirty()) return CompletableFuture.completedFuture(null);
 
         if (editedFile == null || !new File(editedFile).isAbsolute()) {
-            saveFileAs();
-            if (editedFile == null) return;
+            return saveAs();
         }
 
-        File file = new File(editedFile);
-        fileIOService.saveFile(codeArea.getText(), file);
-
-        String savedContent = codeArea.getText();
         undoManager.mark();
-
-        fileCache.put(editedFile, new FileState(currentContent, savedContent));
-        updateNavButtonMark(editedFile);
-
-        printOutput("Saved file: " + file.getAbsolutePath());
-        appendOutput("Saved file: " + file.getAbsolutePath());
+        return saveInBackground(editedFile, codeArea.getText(), fileState, false);
     }
 
     @FXML
     protected void saveFileAs() {
+        saveAs();
+    }
+
+    private CompletableFuture<?> saveAs() {
         FileChooser fileChooser = FileChooserUtils.createSaveJavaFileChooser();
         File file = fileChooser.showSaveDialog(mainVBox.getScene().getWindow());
-        if (file != null) {
-            updateNavButtonPath(editedFile, file.getAbsolutePath()); // old path, and new path
-            editedFile = file.getAbsolutePath();
-            fileIOService.saveFile(codeArea.getText(), file);
-            String savedContent = codeArea.getText();
-            fileCache.put(editedFile, new FileState(currentContent, savedContent));
-            updateNavButtonMark(editedFile);
-            printOutput("File saved: " + editedFile);
-            appendOutput("File saved: " + editedFile);
+        if (file == null) return CompletableFuture.completedFuture(null);
+
+        FileState fileState = fileCache.remove(editedFile); // Moves to the new path
+        journalService().rename(editedFile, file.getAbsolutePath());
+        symbolIndex().rename(editedFile, file.getAbsolutePath());
+        updateNavButtonPath(editedFile, file.getAbsolutePath()); // old path, and new path
+        editedFile = file.getAbsolutePath();
+        fileCache.put(editedFile, fileState);
+
+        undoManager.mark();
+        return saveInBackground(editedFile, codeArea.getText(), fileState, false);
+    }
+
+    // Writes on the save thread, the tab reads clean once the write lands unless it was edited since
+    private CompletableFuture<?> saveInBackground(String path, String text, FileState fileState, boolean autosave) {
+        long version = fileState.getEditVersion();
+        return saveService().save(Path.of(path), text, fileState.getFormat())
+                .whenComplete((written, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        printOutput("Save failed: " + path + ": " + cause.getMessage());
+                        appendOutput("Save failed: " + path + ": " + cause.getMessage());
+                        AlertUtils.showError("Save Failed", "Could not save " + new File(path).getName(), String.valueOf(cause.getMessage()));
+                        return;
+                    }
+                    if (!written) return; // A newer save wrote its text instead, its callback sets the baseline
+
+                    fileState.markSaved(text, version); // Edits made while saving keep the tab dirty against it
+                    if (!fileState.isDirty()) journalService().discard(path);
+                    fileWatcher().watch(Path.of(path), text); // Our own write, not an external change
+                    if (indexService != null) indexService.refresh(Path.of(path));
+                    updateNavButtonMark(path);
+                    if (!autosave) {
+                        printOutput("Saved file: " + path);
+                        appendOutput("Saved file: " + path);
+                    }
+                }));
+    }
+
+    @FXML
+    protected void toggleAutosave() {
+        if (autosaveTimeline == null) {
+            autosaveTimeline = new Timeline(new KeyFrame(javafx.util.Duration.seconds(autosaveSeconds), e -> autosave()));
+            autosaveTimeline.setCycleCount(Animation.INDEFINITE);
+        }
+
+        if (autosaveItem.isSelected()) {
+            autosaveTimeline.play();
+            appendOutput("Autosave every " + autosaveSeconds + " s");
+        } else {
+            autosaveTimeline.stop();
+            appendOutput("Autosave off");
         }
     }
 
+    // Queues every dirty tab that has a file, the writes happen off the FX thread
+    private void autosave() {
+        for (String path : fileCache.dirtyPaths()) {
+            if (!new File(path).isAbsolute()) continue; // Unnamed tabs need Save As
+
+            String text = path.equals(editedFile) ? codeArea.getText() : fileCache.peek(path);
+            if (text != null) saveInBackground(path, text, fileCache.get(path), true);
+        }
+    }
+
+    // Waits for queued saves, so closing right after a save does not lose it
+    public void awaitSaves() {
+        if (saveService != null) saveService.awaitPending(Duration.ofSeconds(10));
+    }
+
+    // Writes out journaled edits still buffered in memory
+    public void flushJournal() {
+        if (journalService != null) journalService.flush();
+    }
+
+    // The user chose to drop the edited file's changes
+    public void discardJournal() {
+        if (journalService != null) journalService.discard(editedFile);
+    }
+
     @FXML
     protected void loadFile() {
         FileState fileState = fileCache.get(editedFile);
@@ -249,42 +450,470 @@ public class MainController {
             return;
         }
 
-        codeArea.clear();
-        editedFile = file.getAbsolutePath();
-        printOutput("Loaded file: " + editedFile);
-        appendOutput("Loaded file: " + editedFile);
-        codeArea.replaceText(fileIOService.loadFile(file));
+        if (file.length() >= largeFileThreshold) {
+            openLargeFile(file);
+            return;
+        }
 
+        printOutput("Loaded file: " + file.getAbsolutePath());
+        appendOutput("Loaded file: " + file.getAbsolutePath());
+        openFile(file.getAbsolutePath(), fileIOService.loadFile(file));
+    }
 
-        String savedContent = codeArea.getText();
-        currentContent = savedContent;
+    private void openFile(String path, FileContent loaded) {
+        snapshotEditedFile();
+        editedFile = path;
+        currentContentTracker = false; // The new state below starts from this text
+        codeArea.replaceText(loaded.text());
+        currentContentTracker = true;
 
-        fileCache.put(editedFile, new FileState(currentContent, savedContent));
+        FileState loadedState = new FileState(loaded.text());
+        loadedState.setFormat(loaded.format()); // Saved back the way it was stored
+        fileCache.put(editedFile, loadedState);
+        if (new File(path).isFile()) fileWatcher().watch(Path.of(path), loaded.text());
+        symbolIndex().index(editedFile, loaded.text());
 
-        updateSyntaxHighlighting(currentContent);
         newNavBarButton(editedFile);
+        refreshTabViews();
     }
 
     @FXML
-    protected void runJavaFile() throws IOException, InterruptedException {
-        FileState fileState = fileCache.get(editedFile);
-        if (fileState.isDirty() || editedFile == null) {
-            saveFile();
-            if (editedFile == null) {
-                printOutput("No file selected");
-                appendOutput("No file selected");
+    protected void loadFolder() {
+        DirectoryChooser directoryChooser = FileChooserUtils.createProjectDirectoryChooser();
+        File folder = directoryChooser.showDialog(mainVBox.getScene().getWindow());
+        if (folder == null) return;
+
+        projectRoot = folder.toPath().toAbsolutePath();
+        projectMainClasses = List.of();
+        projectMainClass = null;
+        appendOutput("Indexing " + projectRoot + "...");
+        indexService().open(projectRoot).whenComplete((summary, error) -> Platform.runLater(() ->
+                appendOutput(error == null ? summary : "Indexing failed: " + error.getMessage())));
+    }
+
+    @FXML
+    protected void findInProject() {
+        if (projectRoot == null) loadFolder();
+        if (projectRoot == null) return;
+
+        if (projectSearchView == null) {
+            projectSearchView = new ProjectSearchView(indexService(), mainVBox.getScene().getWindow(), this::openSearchHit);
+        }
+        projectSearchView.show();
+    }
+
+    private void openSearchHit(SearchHit hit) {
+        File file = hit.file().toFile();
+        if (!showFile(file)) return;
+
+        codeArea.moveTo(Math.min(hit.line() - 1, codeArea.getParagraphs().size() - 1), 0);
+        codeArea.requestFollowCaret();
+        codeArea.requestFocus();
+    }
+
+    // Makes file the edited tab, opening it if needed, false if it went to the large file viewer instead
+    private boolean showFile(File file) {
+        String path = file.getAbsolutePath();
+        if (path.equals(editedFile)) return true;
+
+        if (navButtons.containsKey(path)) {
+            loadFileFromCache(path);
+        } else if (file.length() >= largeFileThreshold) {
+            openLargeFile(file);
+            return false;
+        } else {
+            openFile(path, fileIOService.loadFile(file));
+        }
+        return true;
+    }
+
+    @FXML
+    protected void goToSymbol() {
+        if (goToSymbolView == null) {
+            goToSymbolView = new GoToSymbolView(symbolIndex(), mainVBox.getScene().getWindow(),
+                    () -> symbolIndex().refresh(editedFile, codeArea::getText), this::openSymbol);
+        }
+        goToSymbolView.show();
+    }
+
+    private void openSymbol(SymbolIndexService.Match match) {
+        String path = match.path();
+        if (!path.equals(editedFile)) {
+            if (navButtons.containsKey(path)) loadFileFromCache(path); // Unnamed tabs have no file to reopen
+            else if (!showFile(new File(path))) return;
+        }
+        moveToOffset(match.symbol().offset());
+    }
+
+    private void moveToOffset(int offset) {
+        codeArea.moveTo(Math.min(offset, codeArea.getLength()));
+        codeArea.requestFollowCaret();
+        codeArea.requestFocus();
+    }
+
+    @FXML
+    protected void toggleOutline() {
+        outline.setShowing(outlineItem.isSelected());
+        updateOutline();
+    }
+
+    private void updateOutline() {
+        if (!outline.isShowing() || editedFile == null) return;
+        outline.setSymbols(symbolIndex().symbols(editedFile, codeArea::getText));
+    }
+
+    // Another tab's text is in the editor now
+    private void refreshTabViews() {
+        completionPopup.hide();
+        updateOutline();
+        problemsView.clear();
+        problemsTab.setText("Problems");
+        scheduleDiagnostics();
+    }
+
+    // Stops the running pass and waits for the edits to settle, longer while passes are slow
+    private void scheduleDiagnostics() {
+        if (!liveDiagnostics || !startupDone) return;
+        diagnosticsService().cancel();
+        diagnosticsDelay.setDuration(javafx.util.Duration.millis(diagnosticsService().getDelay().toMillis()));
+        diagnosticsDelay.playFromStart();
+    }
+
+    private void runDiagnostics() {
+        String path = editedFile;
+        FileState fileState = fileCache.get(path);
+        if (fileState == null) return;
+
+        long version = fileState.getEditVersion();
+        diagnosticsService().analyze(path, codeArea.getText(), projectClassPath(path), diagnostics -> Platform.runLater(() -> {
+            if (!path.equals(editedFile) || fileState.getEditVersion() != version) return; // Typed since, wait for the next pass
+            problemsView.setProblems(diagnostics);
+            problemsTab.setText("Problems (" + problemsView.getCount() + ")");
+        }));
+    }
+
+    // Classes of the last project build, so files of the loaded folder resolve each other
+    private Path projectClassPath(String path) {
+        if (projectRoot == null || !new File(path).isAbsolute() || !Path.of(path).startsWith(projectRoot)) return null;
+        Path outputDir = projectBuilder().getOutputDir(projectRoot);
+        return Files.isDirectory(outputDir) ? outputDir : null;
+    }
+
+    private void openLargeFile(File file) {
+        try {
+            new LargeFileViewer(MappedTextFile.open(file.toPath()), mainVBox.getScene().getWindow()).show();
+            printOutput("Opened large file read-only: " + file.getAbsolutePath());
+            appendOutput("Opened large file read-only: " + file.getAbsolutePath());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            AlertUtils.showError("Open Failed", "Could not open " + file.getName(), String.valueOf(e.getMessage()));
+        }
+    }
+
+    // Another program changed an open file, clean tabs follow it, dirty tabs ask
+    private void onExternalChange(Path file, FileContent disk) {
+        if (indexService != null) indexService.refresh(file);
+        String path = file.toString();
+        FileState fileState = fileCache.get(path);
+        if (fileState == null || fileWatcher().isKnown(file, disk.text())) { // Closed, or our own save landed first
+            fileWatcher().watch(file, disk.text());
+            return;
+        }
+
+        if (!fileState.isDirty()) {
+            rebaseTab(path, fileState, disk, disk.text());
+            appendOutput("Reloaded, changed on disk: " + path);
+            return;
+        }
+
+        String mine = path.equals(editedFile) ? codeArea.getText() : fileCache.peek(path);
+        if (mine == null) mine = disk.text();
+
+        ButtonType reload = new ButtonType("Reload from Disk");
+        ButtonType keep = new ButtonType("Keep My Changes");
+        ButtonType merge = new ButtonType("Merge");
+        Optional<ButtonType> result = AlertUtils.createConfirmation("File Changed on Disk",
+                new File(path).getName() + " was changed by another program.",
+                "It also has unsaved changes here. Merge marks every differing block with both versions.",
+                reload, keep, merge);
+
+        if (result.isPresent() && result.get() == reload) {
+            rebaseTab(path, fileState, disk, disk.text());
+            appendOutput("Reloaded, changed on disk: " + path);
+        } else if (result.isPresent() && result.get() == merge) {
+            rebaseTab(path, fileState, disk, MergeUtils.mergeWithMarkers(mine, disk.text(), "editor", "disk"));
+            appendOutput("Merged with the disk version: " + path);
+        } else {
+            rebaseTab(path, fileState, disk, mine); // Saving now knowingly overwrites the disk version
+        }
+    }
+
+    // Makes the disk text the tab's baseline, then gives the tab text, dirty if it differs from the disk
+    private void rebaseTab(String path, FileState fileState, FileContent disk, String text) {
+        fileState.markSaved(disk.text());
+        fileState.setFormat(disk.format());
+        fileWatcher().watch(Path.of(path), disk.text());
+
+        if (path.equals(editedFile)) {
+            if (!text.equals(codeArea.getText())) {
+                int caret = codeArea.getCaretPosition();
+                currentContentTracker = false;
+                codeArea.replaceText(text);
+                currentContentTracker = true;
+                codeArea.moveTo(Math.min(caret, codeArea.getLength()));
+            }
+        } else {
+            fileCache.store(path, text);
+        }
+        symbolIndex().index(path, text);
+        if (path.equals(editedFile)) refreshTabViews();
+
+        fileState.edit(0, text.length(), text.length(), text::substring);
+        journalService().discard(path);
+        if (fileState.isDirty()) journalService().record(path, 0, 0, "", () -> text); // Fresh journal from this text
+        updateNavButtonMark(path);
+    }
+
+    // Called once the first frame is shown, starts what the window did not wait for
+    public void startupFinished(long firstFrameMillis, long sceneMillis) {
+        appendOutput("Started in " + firstFrameMillis + " ms (scene " + sceneMillis + " ms)");
+
+        startupDone = true;
+        restoreJournals();
+        compilerService().prestartWorker();
+        if (liveDiagnostics) diagnosticsService().prestart();
+        scheduleDiagnostics(); // The tab opened at startup
+        completionService().load().whenComplete((summary, error) -> Platform.runLater(() ->
+                appendOutput(error == null ? summary : "Loading completions failed: " + error.getMessage())));
+    }
+
+    private SaveService saveService() {
+        if (saveService == null) saveService = new SaveService(fileIOService);
+        return saveService;
+    }
+
+    // Its flush schedule starts with it, after the first frame
+    private JournalService journalService() {
+        if (journalService == null) journalService = new JournalService(Path.of(System.getProperty("user.home"), ".jde", "journal"));
+        return journalService;
+    }
+
+    private SymbolIndexService symbolIndex() {
+        if (symbolIndex == null) symbolIndex = new SymbolIndexService(highlighterService);
+        return symbolIndex;
+    }
+
+    private CompletionService completionService() {
+        if (completionService == null) {
+            completionService = new CompletionService(Path.of(System.getProperty("user.home"), ".jde", "completion"), symbolIndex());
+        }
+        return completionService;
+    }
+
+    private CompilerService compilerService() {
+        if (compilerService == null) compilerService = new CompilerService();
+        return compilerService;
+    }
+
+    private FileWatcherService fileWatcher() {
+        if (fileWatcher == null) {
+            fileWatcher = new FileWatcherService(fileIOService, (file, content) -> Platform.runLater(() -> onExternalChange(file, content)));
+        }
+        return fileWatcher;
+    }
+
+    private TrigramIndexService indexService() {
+        if (indexService == null) indexService = new TrigramIndexService(Path.of(System.getProperty("user.home"), ".jde", "index"), fileIOService);
+        return indexService;
+    }
+
+    private ProjectBuildService projectBuilder() {
+        if (projectBuilder == null) {
+            projectBuilder = new ProjectBuildService(Path.of(System.getProperty("user.home"), ".jde", "build"), fileIOService, highlighterService);
+        }
+        return projectBuilder;
+    }
+
+    private DiagnosticsService diagnosticsService() {
+        if (diagnosticsService == null) diagnosticsService = new DiagnosticsService();
+        return diagnosticsService;
+    }
+
+    // Reopens tabs whose unsaved edits outlived the last session
+    private void restoreJournals() {
+        for (JournalService.RecoveredTab tab : journalService().recover()) {
+            File file = new File(tab.path());
+            if (file.isAbsolute()) {
+                openFile(tab.path(), file.isFile() ? fileIOService.loadFile(file) : new FileContent("", FileFormat.DEFAULT));
+            } else {
+                newJavaFile(); // Unnamed tabs get a fresh name this session
+            }
+            journalService().adopt(tab, editedFile);
+
+            currentContentTracker = false;
+            codeArea.replaceText(tab.text());
+            currentContentTracker = true;
+
+            symbolIndex().index(editedFile, tab.text());
+            refreshTabViews();
+
+            FileState fileState = fileCache.get(editedFile);
+            fileState.edit(0, tab.text().length(), tab.text().length(), codeArea::getText);
+            if (!fileState.isDirty()) {
+                journalService().discard(editedFile); // Saved after all
+                continue;
+            }
+            updateNavButtonMark(editedFile);
+            appendOutput("Recovered unsaved edits: " + editedFile);
+        }
+    }
+
+    @FXML
+    protected void runJavaFile() {
+        // Runs once the file is saved, the javac fallback compiles it from disk
+        save().whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error == null) startJavaFile();
+        }));
+    }
+
+    private void startJavaFile() {
+        if (editedFile == null || !new File(editedFile).isAbsolute()) {
+            printOutput("No file selected");
+            appendOutput("No file selected");
+            return;
+        }
+
+        String runPath = editedFile;
+        if (runningPrograms.containsKey(runPath)) {
+            appendOutput("Already running: " + new File(runPath).getName());
+            return;
+        }
+
+        File javaFile = new File(runPath);
+        appendOutput("Running: " + javaFile.getName());
+        ProgramRun programRun = compilerService().startRun(javaFile, codeArea.getText(), runTimeout,
+                output::append, // Streamed straight into the console
+                () -> Platform.runLater(() -> runningPrograms.remove(runPath)));
+        runningPrograms.put(runPath, programRun);
+    }
+
+    @FXML
+    protected void buildProject() {
+        startProjectBuild(false);
+    }
+
+    @FXML
+    protected void runProject() {
+        startProjectBuild(true);
+    }
+
+    // Compiles the project from the unsaved tabs and the disk, then starts the chosen main class if asked to
+    private void startProjectBuild(boolean run) {
+        if (projectRoot == null) loadFolder();
+        if (projectRoot == null) return;
+
+        String runKey = projectRoot.toString();
+        if (run && runningPrograms.containsKey(runKey)) {
+            appendOutput("Already running: " + projectRoot.getFileName());
+            return;
+        }
+
+        Map<String, String> buffers = new HashMap<>(); // Unsaved tabs compile as they are, nothing is saved
+        for (String path : fileCache.dirtyPaths()) {
+            String text = path.equals(editedFile) ? codeArea.getText() : fileCache.peek(path);
+            if (text != null && new File(path).isAbsolute()) buffers.put(path, text);
+        }
+
+        appendOutput("Building " + projectRoot + "...");
+        projectBuilder().build(projectRoot, buffers).whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                appendOutput("Build failed: " + cause.getMessage());
                 return;
             }
+
+            for (String diagnostic : result.diagnostics()) {
+                output.append(diagnostic + "\n");
+            }
+            appendOutput(result.toString());
+            projectMainClasses = result.mainClasses();
+            if (run && result.success()) runProjectClasses(result, runKey);
+        }));
+    }
+
+    private void runProjectClasses(ProjectBuildResult result, String runKey) {
+        String mainClass = projectMainClasses.contains(projectMainClass) ? projectMainClass : chooseMainClass();
+        if (mainClass == null) return;
+
+        appendOutput("Running: " + mainClass);
+        ProgramRun programRun = compilerService().startRun(result.classes(), mainClass, runTimeout,
+                output::append, // Streamed straight into the console
+                () -> Platform.runLater(() -> runningPrograms.remove(runKey)));
+        runningPrograms.put(runKey, programRun);
+    }
+
+    @FXML
+    protected void chooseProjectMainClass() {
+        if (projectMainClasses.isEmpty()) {
+            appendOutput("Build the project first");
+            return;
+        }
+        chooseMainClass();
+    }
+
+    // Asks which main class Run Project starts, null if cancelled or there is none
+    private String chooseMainClass() {
+        if (projectMainClasses.isEmpty()) {
+            appendOutput("No class with a main method in " + projectRoot);
+            return null;
+        }
+        if (projectMainClasses.size() == 1) {
+            projectMainClass = projectMainClasses.get(0);
+            appendOutput("Main class: " + projectMainClass);
+            return projectMainClass;
         }
 
-        File javaFile = new File(editedFile);
-        StringBuilder output = compilerService.compileAndRun(javaFile, editedFile);
+        String current = projectMainClasses.contains(projectMainClass) ? projectMainClass : projectMainClasses.get(0);
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(current, projectMainClasses);
+        dialog.setTitle("Main Class");
+        dialog.setHeaderText("Run Project starts this class.");
+        dialog.setContentText("Main class:");
+
+        Optional<String> choice = dialog.showAndWait();
+        if (choice.isEmpty()) return null;
+        projectMainClass = choice.get();
+        appendOutput("Main class: " + projectMainClass);
+        return projectMainClass;
+    }
 
-        for (String s : output.toString().split("\n")) {
-            printOutput(s);
-            appendOutput(s);
-            this.output.setScrollTop(Double.MAX_VALUE); // Scroll to bottom
+    @FXML
+    protected void stopJavaFile() {
+        ProgramRun programRun = runningPrograms.get(editedFile);
+        if (programRun == null && projectRoot != null) programRun = runningPrograms.get(projectRoot.toString()); // The project's run
+        if (programRun == null) {
+            appendOutput("Nothing running in this tab");
+            return;
         }
+        programRun.stop();
+    }
+
+    @FXML
+    protected void setRunTimeout() {
+        TextInputDialog dialog = new TextInputDialog(String.valueOf(runTimeout.toSeconds()));
+        dialog.setTitle("Run Timeout");
+        dialog.setHeaderText("Stop programs that run longer than this.");
+        dialog.setContentText("Seconds:");
+
+        dialog.showAndWait().ifPresent(value -> {
+            try {
+                long seconds = Long.parseLong(value.trim());
+                if (seconds <= 0) throw new NumberFormatException();
+                runTimeout = Duration.ofSeconds(seconds);
+                appendOutput("Run timeout: " + seconds + " s");
+            } catch (NumberFormatException e) {
+                appendOutput("Invalid timeout: " + value);
+            }
+        });
     }
 
     @FXML
@@ -305,14 +934,30 @@ public class MainController {
     @FXML
     protected void paste() { codeArea.paste(); }
 
+    @FXML
+    protected void completeCode() { completionPopup.show(); }
+
+    @FXML
+    protected void unfoldAll() { nestingView.unfoldAll(); }
+
     private void appendOutput(String content) {
-        output.appendText(TimeUtils.now() + " > " + content + "\n");
+        output.append(TimeUtils.now() + " > " + content + "\n");
     }
 
     private void printOutput(String content) {
         System.out.println(TimeUtils.now() + " > " + content);
     }
 
+    @FXML
+    protected void toggleMetrics() {
+        metricsOverlay.setShowing(metricsItem.isSelected());
+    }
+
+    @FXML
+    protected void showTabCacheStats() {
+        appendOutput("Tab cache: " + fileCache.getStats());
+    }
+
     @FXML
     protected void debugDirty() {
         FileState fileState = fileCache.get(editedFile);
@@ -370,20 +1015,46 @@ public class MainController {
         }
     }
 
-    private void updateSyntaxHighlighting(String newText) {
-        codeArea.setStyleSpans(0, highlighterService.computeHighlighting(newText));
+    // Hands the text of the tab being left to the cache, edits only update its dirty state
+    // Brings its symbols up to date too, so only the edited tab ever has pending edits
+    private void snapshotEditedFile() {
+        if (editedFile == null) return;
+        String text = codeArea.getText();
+        symbolIndex().refresh(editedFile, () -> text);
+        fileCache.store(editedFile, text);
     }
 
     private void loadFileFromCache(String path) {
-        FileState fileState = fileCache.get(path);
+        TabSwitchEvent event = new TabSwitchEvent();
+        event.begin();
+        long start = System.nanoTime();
 
+        snapshotEditedFile();
         currentContentTracker = false;
         codeArea.clear();
         editedFile = path;
         printOutput("Loaded cache: " + editedFile);
         appendOutput("Loaded cache: " + editedFile);
-        codeArea.replaceText(fileState.getContent());
+        codeArea.replaceText(fileCache.take(path));
         currentContentTracker = true;
+        refreshTabViews();
+
+        Metrics.record(Metrics.TAB_SWITCH, start);
+        event.path = path;
+        event.characters = codeArea.getLength();
+        event.commit();
+    }
+
+    // Runs after each laid-out frame, the first one showing the typed text styled ends the measurement
+    private void recordTypingLatency() {
+        if (pendingKeystrokeNanos == 0 || !keystrokeStyled) return;
+
+        long latency = System.nanoTime() - pendingKeystrokeNanos;
+        Metrics.histogram(Metrics.TYPING_LATENCY).record(latency);
+        TypingLatencyEvent event = new TypingLatencyEvent();
+        event.latency = latency;
+        event.commit();
+        pendingKeystrokeNanos = 0;
     }
 
     public boolean editedFileIsDirty() {
@@ -0,0 +1,61 @@
+package org.explement.jde.controller;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
+import org.explement.jde.metrics.LatencyHistogram;
+import org.explement.jde.metrics.Metrics;
+
+import java.util.Map;
+
+// Live p50/p99 of every recorded metric, drawn over the editor
+public class MetricsOverlay {
+
+    private static final Duration REFRESH_INTERVAL = Duration.millis(500);
+
+    private final Label label = new Label();
+    private final Timeline refresh = new Timeline(new KeyFrame(REFRESH_INTERVAL, e -> update()));
+
+    public MetricsOverlay() {
+        label.setId("metricsOverlay");
+        label.setMouseTransparent(true); // Never gets in the way of the editor
+        label.setVisible(false);
+        StackPane.setAlignment(label, Pos.TOP_RIGHT);
+        refresh.setCycleCount(Animation.INDEFINITE);
+    }
+
+    public Node getNode() {
+        return label;
+    }
+
+    public void setShowing(boolean showing) {
+        label.setVisible(showing);
+        if (showing) {
+            update();
+            refresh.play();
+        } else {
+            refresh.stop(); // Costs nothing while hidden
+        }
+    }
+
+    private void update() {
+        StringBuilder text = new StringBuilder(String.format("%-20s %8s %8s %7s", "metric", "p50", "p99", "count"));
+        for (Map.Entry<String, LatencyHistogram> entry : Metrics.histograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format("%n%-20s %8s %8s %7d", entry.getKey(),
+                    format(histogram.percentile(50)), format(histogram.percentile(99)), histogram.count()));
+        }
+        label.setText(text.toString());
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 1_000_000) return String.format("%.0f us", nanos / 1e3);
+        if (nanos < 10_000_000_000L) return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%.1f s", nanos / 1e9);
+    }
+}
@@ -0,0 +1,202 @@
+package org.explement.jde.controller;
+
+import javafx.application.Platform;
+import javafx.scene.Cursor;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import org.explement.jde.service.NestingIndex;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.LineNumberFactory;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+// Matching bracket highlight at the caret and fold markers in the line number gutter, both read from the NestingIndex
+// Folding hides the paragraphs through the CodeArea's paragraph style, the text itself stays where it is
+public class NestingView {
+
+    private static final String MATCH_STYLE = "bracket-match";
+    private static final String MISMATCH_STYLE = "bracket-mismatch";
+    private static final String FOLD_MARKER = "-";
+
+    private final CodeArea codeArea;
+    private final NestingIndex nestingIndex;
+    private final IntFunction<Node> lineNumbers;
+    // Offsets of the highlighted bracket pair (empty when none), moved with edits
+    private int[] highlighted = new int[0];
+    private String highlightStyle = MATCH_STYLE;
+    // An update is waiting for the caret to settle
+    private boolean updateQueued;
+
+    public NestingView(CodeArea codeArea, NestingIndex nestingIndex) {
+        this.codeArea = codeArea;
+        this.nestingIndex = nestingIndex;
+        this.lineNumbers = LineNumberFactory.get(codeArea); // Shows "+" on folded blocks, clicking it unfolds
+    }
+
+    // Paragraph graphic: line number, then a marker that folds the block opened on the line
+    public Node gutter(int paragraph) {
+        Label marker = new Label();
+        marker.getStyleClass().add("fold-marker");
+        marker.setCursor(Cursor.HAND);
+        marker.setOnMouseClicked(e -> {
+            if (e.getButton() != MouseButton.PRIMARY || marker.getText().isEmpty()) return;
+            int end = foldEnd(paragraph);
+            if (end > paragraph) codeArea.foldParagraphs(paragraph, end);
+        });
+        updateMarker(marker, paragraph);
+
+        HBox gutter = new HBox(lineNumbers.apply(paragraph), marker);
+        gutter.getStyleClass().add("gutter");
+        return gutter;
+    }
+
+    // Updates the fold markers on screen, called once the index has caught up with an edit
+    public void refreshGutter() {
+        int visibleCount = codeArea.getVisibleParagraphs().size();
+        for (int i = 0; i < visibleCount; i++) {
+            int paragraph = codeArea.visibleParToAllParIndex(i);
+            if (codeArea.getParagraphGraphic(paragraph) instanceof HBox gutter
+                    && gutter.getChildren().getLast() instanceof Label marker) {
+                updateMarker(marker, paragraph);
+            }
+        }
+    }
+
+    // After the edit and caret move of a keystroke are both done, once
+    public void queueUpdate() {
+        if (updateQueued) return;
+        updateQueued = true;
+        Platform.runLater(() -> {
+            updateQueued = false;
+            update();
+        });
+    }
+
+    // Highlights the bracket at or just before the caret and its partner
+    public void update() {
+        int paragraph = codeArea.getCurrentParagraph();
+        int column = codeArea.getCaretColumn();
+        if (nestingIndex.getParagraphCount() != codeArea.getParagraphs().size()) return; // Not caught up with the text yet
+        NestingIndex.Match match = nestingIndex.match(paragraph, column);
+        if (match == null && column > 0) match = nestingIndex.match(paragraph, column - 1);
+
+        if (match == null) {
+            replaceHighlight(new int[0], MATCH_STYLE);
+            return;
+        }
+        int[] offsets = {
+                codeArea.getAbsolutePosition(match.paragraph(), match.column()),
+                codeArea.getAbsolutePosition(match.partnerParagraph(), match.partnerColumn())
+        };
+        replaceHighlight(offsets, match.sameKind() ? MATCH_STYLE : MISMATCH_STYLE);
+    }
+
+    // Caret highlight and fold markers, once the highlighter has applied an edit
+    public void refresh() {
+        update();
+        refreshGutter();
+    }
+
+    public void unfoldAll() {
+        for (int paragraph = 0; paragraph + 1 < codeArea.getParagraphs().size(); paragraph++) {
+            if (codeArea.isFolded(paragraph + 1) && !codeArea.isFolded(paragraph)) codeArea.unfoldParagraphs(paragraph);
+        }
+    }
+
+    // Keeps the highlight on its brackets, called for every edit
+    public void onTextChange(PlainTextChange change) {
+        if (highlighted.length == 0) return;
+
+        int position = change.getPosition();
+        int removedEnd = position + change.getRemoved().length();
+        int delta = change.getInserted().length() - change.getRemoved().length();
+        List<Integer> moved = new ArrayList<>();
+        for (int offset : highlighted) {
+            if (offset < position) moved.add(offset);
+            else if (offset >= removedEnd) moved.add(offset + delta);
+            // Edited away, the highlighter restyles that paragraph without it
+        }
+        highlighted = moved.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Adds the bracket highlight of a paragraph to its spans, used by the highlighter for every paragraph it styles
+    public StyleSpans<Collection<String>> decorate(int paragraph, StyleSpans<Collection<String>> spans) {
+        if (highlighted.length == 0) return spans;
+
+        int paragraphStart = codeArea.getAbsolutePosition(paragraph, 0);
+        int paragraphEnd = paragraphStart + codeArea.getParagraphLength(paragraph);
+        StyleSpansBuilder<Collection<String>> marks = new StyleSpansBuilder<>();
+        int position = paragraphStart;
+        for (int offset : highlighted) { // Sorted
+            if (offset < position || offset >= paragraphEnd) continue;
+            marks.add(Collections.emptyList(), offset - position);
+            marks.add(Collections.singleton(highlightStyle), 1);
+            position = offset + 1;
+        }
+        if (position == paragraphStart) return spans;
+        marks.add(Collections.emptyList(), paragraphEnd - position);
+
+        return spans.overlay(marks.create(), (syntax, mark) -> {
+            if (mark.isEmpty()) return syntax;
+            List<String> styles = new ArrayList<>(syntax);
+            styles.addAll(mark);
+            return styles;
+        });
+    }
+
+    // Restyles the paragraphs the old or new highlight is on
+    private void replaceHighlight(int[] offsets, String style) {
+        int[] sorted = offsets.clone();
+        Arrays.sort(sorted);
+        if (Arrays.equals(sorted, highlighted) && style.equals(highlightStyle)) return;
+
+        TreeSet<Integer> paragraphs = new TreeSet<>();
+        addParagraphs(highlighted, paragraphs);
+        addParagraphs(sorted, paragraphs);
+        highlighted = sorted;
+        highlightStyle = style;
+
+        for (int paragraph : paragraphs) {
+            StyleSpans<Collection<String>> syntax = codeArea.getStyleSpans(paragraph).mapStyles(NestingView::withoutHighlight);
+            codeArea.setStyleSpans(paragraph, 0, decorate(paragraph, syntax));
+        }
+    }
+
+    private void addParagraphs(int[] offsets, TreeSet<Integer> paragraphs) {
+        int length = codeArea.getLength();
+        for (int offset : offsets) {
+            if (offset < length) paragraphs.add(codeArea.offsetToPosition(offset, TwoDimensional.Bias.Forward).getMajor());
+        }
+    }
+
+    private void updateMarker(Label marker, int paragraph) {
+        boolean foldStart = paragraph + 1 < codeArea.getParagraphs().size() && codeArea.isFolded(paragraph + 1) && !codeArea.isFolded(paragraph);
+        marker.setText(!foldStart && foldEnd(paragraph) > paragraph ? FOLD_MARKER : "");
+    }
+
+    // Last paragraph hidden when folding the block opened on paragraph, its closing line stays visible
+    private int foldEnd(int paragraph) {
+        if (paragraph >= codeArea.getParagraphs().size()) return -1;
+        return nestingIndex.foldEnd(paragraph) - 1;
+    }
+
+    private static Collection<String> withoutHighlight(Collection<String> styles) {
+        if (!styles.contains(MATCH_STYLE) && !styles.contains(MISMATCH_STYLE)) return styles;
+        List<String> syntax = new ArrayList<>(styles);
+        syntax.remove(MATCH_STYLE);
+        syntax.remove(MISMATCH_STYLE);
+        return syntax;
+    }
+}
@@ -0,0 +1,49 @@
+package org.explement.jde.controller;
+
+import javafx.scene.Node;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.MouseButton;
+import org.explement.jde.model.Symbol;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+// Declarations of the edited tab beside the editor, nested members indented, a click jumps to one
+public class OutlineView {
+
+    private final ListView<Symbol> list = new ListView<>();
+
+    public OutlineView(IntConsumer onOpen) {
+        list.setId("outline");
+        list.setPrefWidth(220);
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(Symbol symbol, boolean empty) {
+                super.updateItem(symbol, empty);
+                setText(empty || symbol == null ? null : "  ".repeat(Math.max(0, symbol.depth() - 1)) + symbol);
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            Symbol symbol = list.getSelectionModel().getSelectedItem();
+            if (symbol != null && e.getButton() == MouseButton.PRIMARY) onOpen.accept(symbol.offset());
+        });
+    }
+
+    public Node getNode() {
+        return list;
+    }
+
+    public boolean isShowing() {
+        return list.isVisible();
+    }
+
+    public void setShowing(boolean showing) {
+        list.setVisible(showing);
+        list.setManaged(showing); // The editor takes the space back
+    }
+
+    public void setSymbols(List<Symbol> symbols) {
+        if (!list.getItems().equals(symbols)) list.getItems().setAll(symbols); // Keeps the scroll position while typing in a body
+    }
+}
@@ -0,0 +1,160 @@
+package org.explement.jde.controller;
+
+import javafx.scene.Node;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.MouseButton;
+import org.explement.jde.model.CompileDiagnostic;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+
+// Problems list under the editor, and the underlines of the same problems in the CodeArea
+// Underlines move with edits before them and disappear once their text is edited, until the next pass
+public class ProblemsView {
+
+    private static final String ERROR_STYLE = "problem-error";
+    private static final String WARNING_STYLE = "problem-warning";
+
+    private final CodeArea codeArea;
+    private final ListView<CompileDiagnostic> list = new ListView<>();
+    // Underlined ranges in current offsets, sorted by start
+    private List<Marker> markers = new ArrayList<>();
+
+    public ProblemsView(CodeArea codeArea, IntConsumer onOpen) {
+        this.codeArea = codeArea;
+        list.setId("problems");
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(CompileDiagnostic diagnostic, boolean empty) {
+                super.updateItem(diagnostic, empty);
+                setText(empty || diagnostic == null ? null : diagnostic.kind() + "  " + diagnostic.line() + ":" + diagnostic.column()
+                        + "  " + diagnostic.message().lines().findFirst().orElse(""));
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            CompileDiagnostic diagnostic = list.getSelectionModel().getSelectedItem();
+            if (diagnostic != null && diagnostic.start() >= 0 && e.getButton() == MouseButton.PRIMARY) {
+                onOpen.accept((int) diagnostic.start());
+            }
+        });
+    }
+
+    public Node getNode() {
+        return list;
+    }
+
+    public int getCount() {
+        return list.getItems().size();
+    }
+
+    // Shows the problems of the edited tab's current text
+    public void setProblems(List<CompileDiagnostic> diagnostics) {
+        list.getItems().setAll(diagnostics);
+
+        List<Marker> newMarkers = new ArrayList<>();
+        int length = codeArea.getLength();
+        for (CompileDiagnostic diagnostic : diagnostics) {
+            if (diagnostic.start() < 0 || diagnostic.kind() == CompileDiagnostic.Kind.NOTE) continue;
+            int start = (int) Math.min(diagnostic.start(), length);
+            int end = (int) Math.min(Math.max(diagnostic.end(), diagnostic.start() + 1), length); // At least one char
+            if (end == start && start > 0) start--; // At the very end, mark the char before
+            if (end > start) newMarkers.add(new Marker(start, end, diagnostic.kind() == CompileDiagnostic.Kind.ERROR ? ERROR_STYLE : WARNING_STYLE));
+        }
+        newMarkers.sort((a, b) -> Integer.compare(a.start, b.start));
+        replaceMarkers(newMarkers);
+    }
+
+    // Forgets the problems, for a tab that was just shown
+    public void clear() {
+        list.getItems().clear();
+        replaceMarkers(new ArrayList<>());
+    }
+
+    // Keeps the underlines on their text, called for every edit
+    public void onTextChange(PlainTextChange change) {
+        if (markers.isEmpty()) return;
+
+        int position = change.getPosition();
+        int removedEnd = position + change.getRemoved().length();
+        int delta = change.getInserted().length() - change.getRemoved().length();
+        List<Marker> moved = new ArrayList<>(markers.size());
+        for (Marker marker : markers) {
+            if (marker.end <= position) moved.add(marker);
+            else if (marker.start >= removedEnd) moved.add(new Marker(marker.start + delta, marker.end + delta, marker.style));
+            // Edited inside, the highlighter restyles that paragraph without it
+        }
+        markers = moved;
+    }
+
+    // Adds the underlines of a paragraph to its syntax spans, used by the highlighter for every paragraph it styles
+    public StyleSpans<Collection<String>> decorate(int paragraph, StyleSpans<Collection<String>> spans) {
+        if (markers.isEmpty()) return spans;
+
+        int paragraphStart = codeArea.getAbsolutePosition(paragraph, 0);
+        int paragraphEnd = paragraphStart + codeArea.getParagraphLength(paragraph);
+        StyleSpansBuilder<Collection<String>> underlines = new StyleSpansBuilder<>();
+        int position = paragraphStart;
+        for (Marker marker : markers) {
+            if (marker.start >= paragraphEnd) break;
+            int start = Math.max(marker.start, position);
+            int end = Math.min(marker.end, paragraphEnd);
+            if (end <= start) continue;
+            underlines.add(Collections.emptyList(), start - position);
+            underlines.add(Collections.singleton(marker.style), end - start);
+            position = end;
+        }
+        if (position == paragraphStart) return spans;
+        underlines.add(Collections.emptyList(), paragraphEnd - position);
+
+        return spans.overlay(underlines.create(), (syntax, underline) -> {
+            if (underline.isEmpty()) return syntax;
+            List<String> styles = new ArrayList<>(syntax);
+            styles.addAll(underline);
+            return styles;
+        });
+    }
+
+    // Restyles the paragraphs the old or new underlines are on
+    private void replaceMarkers(List<Marker> newMarkers) {
+        TreeSet<Integer> paragraphs = new TreeSet<>();
+        addParagraphs(markers, paragraphs);
+        addParagraphs(newMarkers, paragraphs);
+        markers = newMarkers;
+
+        for (int paragraph : paragraphs) {
+            StyleSpans<Collection<String>> syntax = codeArea.getStyleSpans(paragraph).mapStyles(ProblemsView::withoutUnderline);
+            codeArea.setStyleSpans(paragraph, 0, decorate(paragraph, syntax));
+        }
+    }
+
+    private void addParagraphs(List<Marker> markers, TreeSet<Integer> paragraphs) {
+        int length = codeArea.getLength();
+        for (Marker marker : markers) {
+            if (marker.start > length) continue;
+            int first = codeArea.offsetToPosition(marker.start, TwoDimensional.Bias.Forward).getMajor();
+            int last = codeArea.offsetToPosition(Math.min(marker.end, length), TwoDimensional.Bias.Backward).getMajor();
+            for (int paragraph = first; paragraph <= last; paragraph++) paragraphs.add(paragraph);
+        }
+    }
+
+    private static Collection<String> withoutUnderline(Collection<String> styles) {
+        if (!styles.contains(ERROR_STYLE) && !styles.contains(WARNING_STYLE)) return styles;
+        List<String> syntax = new ArrayList<>(styles);
+        syntax.remove(ERROR_STYLE);
+        syntax.remove(WARNING_STYLE);
+        return syntax;
+    }
+
+    private record Marker(int start, int end, String style) {
+    }
+}
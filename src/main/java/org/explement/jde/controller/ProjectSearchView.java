@@ -0,0 +1,95 @@
+package org.explement.jde.controller;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.explement.jde.model.SearchHit;
+import org.explement.jde.service.TrigramIndexService;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
+
+// "Find in Project" window, a regex over every indexed file, double click opens the hit
+public class ProjectSearchView {
+
+    private static final int MAX_HITS = 1000;
+
+    private final TrigramIndexService indexService;
+    private final Stage stage = new Stage();
+    private final TextField queryField = new TextField();
+    private final ListView<SearchHit> results = new ListView<>();
+    private final Label status = new Label();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "project-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingSearch;
+
+    public ProjectSearchView(TrigramIndexService indexService, Window owner, Consumer<SearchHit> onOpen) {
+        this.indexService = indexService;
+
+        queryField.setPromptText("Regex");
+        queryField.setOnAction(e -> search());
+        HBox.setHgrow(queryField, Priority.ALWAYS);
+
+        results.setId("searchResults");
+        results.setOnMouseClicked(e -> {
+            SearchHit hit = results.getSelectionModel().getSelectedItem();
+            if (hit != null && e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) onOpen.accept(hit);
+        });
+
+        HBox toolbar = new HBox(6, queryField, status);
+        toolbar.setPadding(new Insets(4));
+
+        BorderPane root = new BorderPane(results);
+        root.setTop(toolbar);
+
+        Scene scene = new Scene(root, 700, 450);
+        if (owner != null && owner.getScene() != null) scene.getStylesheets().addAll(owner.getScene().getStylesheets());
+        stage.setScene(scene);
+        stage.initOwner(owner);
+    }
+
+    public void show() {
+        stage.setTitle("Find in Project: " + indexService.getRoot());
+        stage.show();
+        stage.toFront();
+        queryField.requestFocus();
+    }
+
+    private void search() {
+        String query = queryField.getText();
+        if (query.isEmpty()) return;
+        if (pendingSearch != null) pendingSearch.cancel(true);
+
+        status.setText("Searching...");
+        pendingSearch = executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                List<SearchHit> hits = indexService.search(query, MAX_HITS);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                Platform.runLater(() -> {
+                    results.getItems().setAll(hits);
+                    status.setText(hits.size() + (hits.size() == MAX_HITS ? "+" : "") + " hits in " + millis + " ms");
+                });
+            } catch (PatternSyntaxException e) {
+                Platform.runLater(() -> status.setText("Invalid regex: " + e.getDescription()));
+            }
+        });
+    }
+}
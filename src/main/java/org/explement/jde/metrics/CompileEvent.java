@@ -0,0 +1,23 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.explement.jde.Compile")
+@Label("Compile")
+@Category("JDE")
+public class CompileEvent extends Event {
+    @Label("Class Name")
+    public String className;
+
+    @Label("From Build Cache")
+    public boolean cached;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Diagnostics")
+    public int diagnostics;
+}
@@ -0,0 +1,23 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.explement.jde.Diagnostics")
+@Label("Live Diagnostics")
+@Category("JDE")
+public class DiagnosticsEvent extends Event {
+    @Label("Phase") // parse or analyze, the last one that ran
+    public String phase;
+
+    @Label("Characters")
+    public int characters;
+
+    @Label("Diagnostics")
+    public int diagnostics;
+
+    @Label("Cancelled")
+    public boolean cancelled;
+}
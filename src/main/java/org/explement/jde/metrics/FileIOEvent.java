@@ -0,0 +1,22 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.explement.jde.FileIO")
+@Label("File I/O")
+@Category("JDE")
+public class FileIOEvent extends Event {
+    @Label("Operation") // load or save
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,20 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.explement.jde.Highlight")
+@Label("Syntax Highlighting")
+@Category("JDE")
+public class HighlightEvent extends Event {
+    @Label("Phase") // full, lex or apply
+    public String phase;
+
+    @Label("Paragraphs")
+    public int paragraphs;
+
+    @Label("Characters")
+    public int characters;
+}
@@ -0,0 +1,62 @@
+package org.explement.jde.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free histogram of durations in nanoseconds, buckets are at most 1/8 of their value wide
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8; // Per power of two
+    private static final int OCTAVES = 40; // Up to 2^42 ns, over an hour
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS * OCTAVES);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100), 0 when empty
+    public long percentile(double percentile) {
+        long count = count();
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    // Values below 8 get a bucket each, above that 8 buckets per power of two
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+
+        int highestBit = 63 - Long.numberOfLeadingZeros(nanos);
+        int octave = highestBit - 2;
+        int subBucket = (int) (nanos >>> (highestBit - 3)) - SUB_BUCKETS;
+        return Math.min(octave * SUB_BUCKETS + subBucket, SUB_BUCKETS * OCTAVES - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        int octave = bucket / SUB_BUCKETS;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (octave - 1)) - 1;
+    }
+}
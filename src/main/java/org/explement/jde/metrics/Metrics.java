@@ -0,0 +1,46 @@
+package org.explement.jde.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Process-wide latency histograms by name, cheap enough to stay on in production
+public class Metrics {
+
+    private Metrics() {} // Create private constructor
+
+    public static final String TYPING_LATENCY = "keystroke-to-render";
+    public static final String EDIT_TRACKING = "edit.track";
+    public static final String HIGHLIGHT_FULL = "highlight.full";
+    public static final String HIGHLIGHT_LEX = "highlight.lex";
+    public static final String HIGHLIGHT_APPLY = "highlight.apply";
+    public static final String FILE_LOAD = "file.load";
+    public static final String FILE_SAVE = "file.save";
+    public static final String TAB_SWITCH = "tab.switch";
+    public static final String COMPILE = "compile";
+    public static final String COMPILE_CACHED = "compile.cached";
+    public static final String RUN = "run";
+    public static final String DIAGNOSTICS = "diagnostics";
+    public static final String COMPLETION = "completion";
+    public static final String STARTUP = "startup.first-frame";
+
+    // Sorted by name, so the overlay lists them in a stable order
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    // Records the time since startNanos, taken from System.nanoTime()
+    public static void record(String name, long startNanos) {
+        histogram(name).record(System.nanoTime() - startNanos);
+    }
+
+    public static Map<String, LatencyHistogram> histograms() {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+
+    public static void reset() {
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+}
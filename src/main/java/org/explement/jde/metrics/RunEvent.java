@@ -0,0 +1,20 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.explement.jde.Run")
+@Label("Run Program")
+@Category("JDE")
+public class RunEvent extends Event {
+    @Label("Main Class")
+    public String mainClass;
+
+    @Label("In Worker JVM")
+    public boolean worker;
+
+    @Label("Stopped")
+    public boolean stopped;
+}
@@ -0,0 +1,25 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Committed once, on the first laid-out frame of the main window
+@Name("org.explement.jde.Startup")
+@Label("Startup")
+@Category("JDE")
+public class StartupEvent extends Event {
+    @Label("Launch To Start")
+    @Timespan
+    public long launch;
+
+    @Label("Scene Built")
+    @Timespan
+    public long scene;
+
+    @Label("Launch To First Frame")
+    @Timespan
+    public long firstFrame;
+}
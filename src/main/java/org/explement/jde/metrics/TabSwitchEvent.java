@@ -0,0 +1,17 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.explement.jde.TabSwitch")
+@Label("Tab Switch")
+@Category("JDE")
+public class TabSwitchEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Characters")
+    public int characters;
+}
@@ -0,0 +1,17 @@
+package org.explement.jde.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Committed on the first laid-out frame that shows a keystroke highlighted
+@Name("org.explement.jde.TypingLatency")
+@Label("Keystroke To Styled Render")
+@Category("JDE")
+public class TypingLatencyEvent extends Event {
+    @Label("Latency")
+    @Timespan
+    public long latency;
+}
@@ -0,0 +1,16 @@
+package org.explement.jde.model;
+
+import java.util.List;
+import java.util.Map;
+
+// Outcome of one compilation, classes maps binary class names to class file bytes
+public record CompilationResult(boolean success, List<CompileDiagnostic> diagnostics, Map<String, byte[]> classes) {
+
+    // Binary name of the compiled class with the given simple name, or null if there is none
+    public String findClass(String simpleName) {
+        for (String name : classes.keySet()) {
+            if (name.equals(simpleName) || name.endsWith("." + simpleName)) return name;
+        }
+        return null;
+    }
+}
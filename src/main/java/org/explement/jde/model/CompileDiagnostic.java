@@ -0,0 +1,17 @@
+package org.explement.jde.model;
+
+// A single compiler message, line and column are 1-based (0 when unknown)
+// start and end are char offsets into the source (-1 when unknown)
+public record CompileDiagnostic(long line, long column, long start, long end, String message, Kind kind) {
+
+    public enum Kind {
+        ERROR,
+        WARNING,
+        NOTE
+    }
+
+    @Override
+    public String toString() {
+        return kind + " at " + line + ":" + column + ": " + message;
+    }
+}
@@ -0,0 +1,15 @@
+package org.explement.jde.model;
+
+// A suggestion for the identifier at the caret, kind is null for a keyword, detail says where the name comes from
+public record Completion(String name, Symbol.Kind kind, String detail) {
+
+    public boolean isCallable() {
+        return kind == Symbol.Kind.METHOD || kind == Symbol.Kind.CONSTRUCTOR;
+    }
+
+    @Override
+    public String toString() {
+        String marker = kind == null ? "k" : kind.getMarker();
+        return marker + " " + name + (isCallable() ? "()" : "") + (detail.isEmpty() ? "" : "  " + detail);
+    }
+}
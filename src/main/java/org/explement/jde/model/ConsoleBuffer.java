@@ -0,0 +1,77 @@
+package org.explement.jde.model;
+
+import java.util.Arrays;
+
+// Bounded ring buffer of console lines waiting to be shown, safe to fill from any thread
+public class ConsoleBuffer {
+
+    // A line this long is pushed even without a line break
+    private static final int MAX_PARTIAL_LENGTH = 64 * 1024;
+
+    private final String[] lines;
+    private int head = 0;
+    private int size = 0;
+    // Text after the last line break
+    private final StringBuilder partial = new StringBuilder();
+    // Lines pushed out before they were drained
+    private long dropped = 0;
+
+    public ConsoleBuffer(int capacity) {
+        this.lines = new String[capacity];
+    }
+
+    public synchronized void append(String text) {
+        int start = 0;
+        for (int lineEnd = text.indexOf('\n'); lineEnd >= 0; lineEnd = text.indexOf('\n', start)) {
+            partial.append(text, start, lineEnd);
+            push(partial.toString());
+            partial.setLength(0);
+            start = lineEnd + 1;
+        }
+        partial.append(text, start, text.length());
+
+        if (partial.length() > MAX_PARTIAL_LENGTH) {
+            push(partial.toString());
+            partial.setLength(0);
+        }
+    }
+
+    // Moves everything buffered into target, returns how many lines were dropped since the last drain
+    public synchronized long drainTo(StringBuilder target) {
+        for (int i = 0; i < size; i++) {
+            target.append(lines[(head + i) % lines.length]).append('\n');
+            lines[(head + i) % lines.length] = null;
+        }
+        target.append(partial); // Shown now, continued by the next drain
+        partial.setLength(0);
+        head = 0;
+        size = 0;
+
+        long droppedLines = dropped;
+        dropped = 0;
+        return droppedLines;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0 && partial.isEmpty() && dropped == 0;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(lines, null);
+        head = 0;
+        size = 0;
+        partial.setLength(0);
+        dropped = 0;
+    }
+
+    private void push(String line) {
+        if (size == lines.length) { // Full, overwrite the oldest line
+            lines[head] = null;
+            head = (head + 1) % lines.length;
+            size--;
+            dropped++;
+        }
+        lines[(head + size) % lines.length] = line;
+        size++;
+    }
+}
@@ -0,0 +1,5 @@
+package org.explement.jde.model;
+
+// Text of a loaded file with '\n' line endings, plus the format it was stored in
+public record FileContent(String text, FileFormat format) {
+}
@@ -0,0 +1,11 @@
+package org.explement.jde.model;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// How a file is stored on disk, detected on load and kept on save
+public record FileFormat(Charset charset, boolean bom, String lineSeparator) {
+
+    // New files: UTF-8 without BOM, '\n' line endings
+    public static final FileFormat DEFAULT = new FileFormat(StandardCharsets.UTF_8, false, "\n");
+}
@@ -1,31 +1,121 @@
 package org.explement.jde.model;
 
+import java.util.function.BiFunction;
+
 public class FileState {
-    private String content;
-    private String lastSaved;
+    // Saved text is remembered as a hash per block, not as a second copy
+    private static final int BLOCK_SIZE = 4096;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private FileFormat format = FileFormat.DEFAULT; // Charset, BOM and line separator to save with
+
+    // Clean exactly when the text is the saved text again
+    private long editVersion;
+    private long savedVersion;
 
-    public FileState(String content, String lastSaved) {
-        this.content = content;
-        this.lastSaved = lastSaved;
+    private int length;
+    private int savedLength;
+    // Hash of the saved text up to each block boundary, and of the whole text last
+    private long[] savedPrefixHashes;
+    // Only [editStart, length - untouchedTail) can differ from the saved text
+    private int editStart;
+    private int untouchedTail;
+
+    public FileState(CharSequence savedContent) {
+        markSaved(savedContent);
     }
 
     public boolean isDirty() {
-        return !content.equals(lastSaved);
+        return editVersion != savedVersion;
+    }
+
+    public long getEditVersion() {
+        return editVersion;
+    }
+
+    // The text now on disk, the new baseline to compare edits against
+    public void markSaved(CharSequence text) {
+        markSaved(text, editVersion);
+    }
+
+    // The text of edit version version is now on disk, edits made since keep the state dirty against it
+    public void markSaved(CharSequence text, long version) {
+        savedLength = text.length();
+        savedPrefixHashes = prefixHashes(text);
+        savedVersion = version;
+        if (version == editVersion) {
+            length = savedLength;
+            editStart = Integer.MAX_VALUE;
+            untouchedTail = Integer.MAX_VALUE;
+        } else { // Where the newer edits differ from the saved text is unknown, compare all of it
+            editStart = 0;
+            untouchedTail = 0;
+        }
+    }
+
+    // Records one edit of the live text, text(start, end) reads the text after the edit
+    // Costs O(1), plus a hash of the edited span when the length is back to the saved length
+    public void edit(int position, int insertedLength, int newLength, BiFunction<Integer, Integer, String> text) {
+        editVersion++;
+        length = newLength;
+        editStart = Math.min(editStart, position);
+        untouchedTail = Math.min(untouchedTail, newLength - position - insertedLength);
+
+        if (length == savedLength && matchesSaved(text)) {
+            savedVersion = editVersion; // Edited back to the saved text, e.g. by undo
+            editStart = Integer.MAX_VALUE;
+            untouchedTail = Integer.MAX_VALUE;
+        }
+    }
+
+    private boolean matchesSaved(BiFunction<Integer, Integer, String> text) {
+        // Widen the edited span to block boundaries so the saved hashes cover it
+        int from = Math.min(editStart, length) / BLOCK_SIZE * BLOCK_SIZE;
+        int to = Math.max(from, length - untouchedTail);
+        to = Math.min(length, (to + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE);
+        if (from == to) return true;
+
+        long hash = 0;
+        String span = text.apply(from, to);
+        for (int i = 0; i < span.length(); i++) {
+            hash = hash * HASH_MULTIPLIER + span.charAt(i);
+        }
+
+        long savedHash = savedPrefixHashes[hashIndex(to)] - savedPrefixHashes[hashIndex(from)] * power(to - from);
+        return hash == savedHash;
+    }
+
+    private int hashIndex(int position) {
+        return position == savedLength ? savedPrefixHashes.length - 1 : position / BLOCK_SIZE;
     }
 
-    public String getContent() {
-        return content;
+    private static long[] prefixHashes(CharSequence text) {
+        long[] hashes = new long[(text.length() + BLOCK_SIZE - 1) / BLOCK_SIZE + 1];
+        long hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (i % BLOCK_SIZE == 0) hashes[i / BLOCK_SIZE] = hash;
+            hash = hash * HASH_MULTIPLIER + text.charAt(i);
+        }
+        hashes[hashes.length - 1] = hash;
+        return hashes;
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    private static long power(int exponent) {
+        long result = 1;
+        long base = HASH_MULTIPLIER;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) result *= base;
+            base *= base;
+            exponent >>= 1;
+        }
+        return result;
     }
 
-    public String getLastSaved() {
-        return lastSaved;
+    public FileFormat getFormat() {
+        return format;
     }
 
-    public void setLastSaved(String lastSaved) {
-        this.lastSaved = lastSaved;
+    public void setFormat(FileFormat format) {
+        this.format = format;
     }
 }
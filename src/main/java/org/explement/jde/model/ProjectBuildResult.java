@@ -0,0 +1,16 @@
+package org.explement.jde.model;
+
+import java.util.List;
+import java.util.Map;
+
+// Outcome of one project build, classes holds every class of the project, not only the recompiled ones
+// diagnostics are prefixed with the source path relative to the project root
+public record ProjectBuildResult(boolean success, List<String> diagnostics, int compiledFiles, int sourceFiles,
+                                 List<String> mainClasses, Map<String, byte[]> classes, long millis) {
+
+    @Override
+    public String toString() {
+        return (success ? "Build succeeded: " : "Build failed: ") + compiledFiles + " of " + sourceFiles
+                + " files compiled in " + millis + " ms";
+    }
+}
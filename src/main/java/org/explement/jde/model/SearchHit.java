@@ -0,0 +1,12 @@
+package org.explement.jde.model;
+
+import java.nio.file.Path;
+
+// A line matching a project search, line is 1-based
+public record SearchHit(Path file, int line, String text) {
+
+    @Override
+    public String toString() {
+        return file.getFileName() + ":" + line + "  " + text.strip();
+    }
+}
@@ -0,0 +1,41 @@
+package org.explement.jde.model;
+
+// A declaration found in a file, offset is where its name starts, depth is how many types enclose it
+public record Symbol(String name, Kind kind, String container, int offset, int depth) {
+
+    public enum Kind {
+        CLASS("C"),
+        INTERFACE("I"),
+        ENUM("E"),
+        RECORD("R"),
+        ANNOTATION("@"),
+        CONSTRUCTOR("c"),
+        METHOD("m"),
+        FIELD("f"),
+        ENUM_CONSTANT("e");
+
+        private final String marker; // Shown before the name in lists
+
+        Kind(String marker) {
+            this.marker = marker;
+        }
+
+        public String getMarker() {
+            return marker;
+        }
+
+        public boolean isType() {
+            return ordinal() <= ANNOTATION.ordinal();
+        }
+    }
+
+    public Symbol withOffset(int offset) {
+        return new Symbol(name, kind, container, offset, depth);
+    }
+
+    @Override
+    public String toString() {
+        boolean callable = kind == Kind.METHOD || kind == Kind.CONSTRUCTOR;
+        return kind.getMarker() + " " + name + (callable ? "()" : "");
+    }
+}
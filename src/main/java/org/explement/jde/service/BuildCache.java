@@ -0,0 +1,161 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.CompilationResult;
+import org.explement.jde.model.CompileDiagnostic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Content-addressed cache of successful compilations, classes and diagnostics, kept in memory and spilled to disk
+public class BuildCache {
+
+    private static final int MAX_MEMORY_ENTRIES = 32;
+    private static final int MAX_DISK_ENTRIES = 256;
+
+    private final Path spillDir;
+
+    // Least recently used entries are dropped from memory first, they stay on disk
+    private final Map<String, CompilationResult> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompilationResult> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    };
+
+    public BuildCache(Path spillDir) {
+        this.spillDir = spillDir;
+    }
+
+    // Hash of everything that decides the compiler output
+    public static String key(String className, String source, List<String> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Runtime.version().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(className.getBytes(StandardCharsets.UTF_8));
+            for (String option : options) {
+                digest.update((byte) 0);
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JDK ships SHA-256
+        }
+    }
+
+    // Compilation cached for the key, or null on a miss
+    public synchronized CompilationResult get(String key) {
+        CompilationResult result = memory.get(key);
+        if (result != null) return result;
+
+        result = readSpill(key);
+        if (result != null) memory.put(key, result);
+        return result;
+    }
+
+    public synchronized void put(String key, CompilationResult result) {
+        memory.put(key, result);
+        try {
+            writeSpill(key, result);
+        } catch (IOException e) {
+            System.out.println(e.getMessage()); // Still cached in memory
+        }
+    }
+
+    private CompilationResult readSpill(String key) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile(key))))) {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            List<CompileDiagnostic> diagnostics = new ArrayList<>();
+            int diagnosticCount = in.readInt();
+            for (int i = 0; i < diagnosticCount; i++) {
+                long line = in.readLong();
+                long column = in.readLong();
+                long start = in.readLong();
+                long end = in.readLong();
+                CompileDiagnostic.Kind kind = CompileDiagnostic.Kind.values()[in.readByte()];
+                byte[] message = new byte[in.readInt()];
+                in.readFully(message);
+                diagnostics.add(new CompileDiagnostic(line, column, start, end, new String(message, StandardCharsets.UTF_8), kind));
+            }
+            spillFile(key).toFile().setLastModified(System.currentTimeMillis()); // Recently used, prune it last
+            return new CompilationResult(true, diagnostics, classes);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) { // Corrupt or partly written, treat as a miss
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeSpill(String key, CompilationResult result) throws IOException {
+        Files.createDirectories(spillDir);
+        Path temp = Files.createTempFile(spillDir, key, ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(result.classes().size());
+            for (Map.Entry<String, byte[]> entry : result.classes().entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.writeInt(result.diagnostics().size());
+            for (CompileDiagnostic diagnostic : result.diagnostics()) {
+                out.writeLong(diagnostic.line());
+                out.writeLong(diagnostic.column());
+                out.writeLong(diagnostic.start());
+                out.writeLong(diagnostic.end());
+                out.writeByte(diagnostic.kind().ordinal());
+                byte[] message = diagnostic.message().getBytes(StandardCharsets.UTF_8); // Can be longer than writeUTF allows
+                out.writeInt(message.length);
+                out.write(message);
+            }
+        }
+        Files.move(temp, spillFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        pruneSpill();
+    }
+
+    // Deletes the oldest spill files once there are too many
+    private void pruneSpill() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(spillDir)) {
+            files = paths.filter(path -> path.toString().endsWith(".result")).toList();
+        }
+        if (files.size() <= MAX_DISK_ENTRIES) return;
+
+        List<Path> oldestFirst = files.stream()
+                .sorted(Comparator.comparingLong(path -> path.toFile().lastModified()))
+                .toList();
+        for (Path path : oldestFirst.subList(0, files.size() - MAX_DISK_ENTRIES)) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private Path spillFile(String key) {
+        return spillDir.resolve(key + ".result");
+    }
+}
@@ -0,0 +1,140 @@
+package org.explement.jde.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Reads what the project build and completion need from a class file: its supertypes, the classes it refers to,
+// whether it has a main method and its visible members
+// Names are internal names (a/b/C$D)
+class ClassFileReader {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PROTECTED = 0x0004;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_INTERFACE = 0x0200;
+    static final int ACC_SYNTHETIC = 0x1000;
+    static final int ACC_ANNOTATION = 0x2000;
+    static final int ACC_ENUM = 0x4000;
+    private static final String MAIN_DESCRIPTOR = "([Ljava/lang/String;)V";
+
+    final String name;
+    final int access;
+    final List<String> supertypes = new ArrayList<>();
+    // Classes named anywhere in the constant pool, including descriptors and generic signatures
+    final Set<String> references = new HashSet<>();
+    boolean hasMain;
+    // Public and protected fields and methods, constructors and compiler-generated ones left out
+    final List<Member> members = new ArrayList<>();
+
+    ClassFileReader(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        in.getInt(); // Magic
+        in.getInt(); // Version
+
+        int count = in.getShort() & 0xFFFF;
+        String[] utf8 = new String[count];
+        int[] classNames = new int[count]; // Index of the name of each class entry, 0 if not a class
+        for (int i = 1; i < count; i++) {
+            int tag = in.get();
+            switch (tag) {
+                case 1 -> utf8[i] = readUtf8(in);
+                case 7 -> classNames[i] = in.getShort() & 0xFFFF;
+                case 8, 16, 19, 20 -> in.getShort();
+                case 15 -> { in.get(); in.getShort(); }
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.getInt();
+                case 5, 6 -> { in.getLong(); i++; } // Takes two entries
+                default -> throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        for (int i = 1; i < count; i++) {
+            if (classNames[i] != 0) addReference(utf8[classNames[i]]);
+            else if (utf8[i] != null) addDescriptorReferences(utf8[i]);
+        }
+
+        access = in.getShort() & 0xFFFF;
+        name = utf8[classNames[in.getShort() & 0xFFFF]];
+        int superClass = in.getShort() & 0xFFFF;
+        if (superClass != 0) supertypes.add(utf8[classNames[superClass]]);
+        int interfaces = in.getShort() & 0xFFFF;
+        for (int i = 0; i < interfaces; i++) {
+            supertypes.add(utf8[classNames[in.getShort() & 0xFFFF]]);
+        }
+
+        int fields = in.getShort() & 0xFFFF;
+        for (int i = 0; i < fields; i++) {
+            int fieldAccess = in.getShort();
+            String fieldName = utf8[in.getShort() & 0xFFFF];
+            in.getShort(); // Descriptor
+            addMember(fieldName, fieldAccess, false);
+            skipAttributes(in);
+        }
+        int methods = in.getShort() & 0xFFFF;
+        for (int i = 0; i < methods; i++) {
+            int methodAccess = in.getShort();
+            String methodName = utf8[in.getShort() & 0xFFFF];
+            String descriptor = utf8[in.getShort() & 0xFFFF];
+            if (methodName.equals("main") && descriptor.equals(MAIN_DESCRIPTOR) && (methodAccess & (ACC_PUBLIC | ACC_STATIC)) == (ACC_PUBLIC | ACC_STATIC)) {
+                hasMain = true;
+            }
+            if (!methodName.startsWith("<")) addMember(methodName, methodAccess, true);
+            skipAttributes(in);
+        }
+    }
+
+    private void addMember(String memberName, int memberAccess, boolean method) {
+        if ((memberAccess & (ACC_PUBLIC | ACC_PROTECTED)) != 0 && (memberAccess & ACC_SYNTHETIC) == 0) {
+            members.add(new Member(memberName, memberAccess, method));
+        }
+    }
+
+    // A class entry is an internal name, or an array descriptor
+    private void addReference(String name) {
+        if (name.startsWith("[")) addDescriptorReferences(name);
+        else references.add(name);
+    }
+
+    // Every Lname; or Lname< in a descriptor or signature
+    private void addDescriptorReferences(String text) {
+        int from = text.indexOf('L');
+        while (from >= 0) {
+            int end = from + 1;
+            while (end < text.length() && text.charAt(end) != ';' && text.charAt(end) != '<' && text.charAt(end) != '(') end++;
+            if (end < text.length() && end > from + 1 && text.charAt(end) != '(') references.add(text.substring(from + 1, end));
+            from = text.indexOf('L', end);
+        }
+    }
+
+    private static void skipAttributes(ByteBuffer in) {
+        int attributes = in.getShort() & 0xFFFF;
+        for (int i = 0; i < attributes; i++) {
+            in.getShort(); // Name
+            int length = in.getInt();
+            in.position(in.position() + length);
+        }
+    }
+
+    // Modified UTF-8 as in DataInput.readUTF
+    private static String readUtf8(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        StringBuilder text = new StringBuilder(length);
+        int end = in.position() + length;
+        while (in.position() < end) {
+            int b = in.get() & 0xFF;
+            if (b < 0x80) {
+                text.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                text.append((char) (((b & 0x1F) << 6) | (in.get() & 0x3F)));
+            } else {
+                text.append((char) (((b & 0x0F) << 12) | ((in.get() & 0x3F) << 6) | (in.get() & 0x3F)));
+            }
+        }
+        return text.toString();
+    }
+
+    record Member(String name, int access, boolean method) {
+    }
+}
@@ -1,44 +1,301 @@
 package org.explement.jde.service;
 
-import java.io.BufferedReader;
+import org.explement.jde.metrics.CompileEvent;
+import org.explement.jde.metrics.Metrics;
+import org.explement.jde.metrics.RunEvent;
+import org.explement.jde.model.CompilationResult;
+import org.explement.jde.model.CompileDiagnostic;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class CompilerService {
-    public StringBuilder compileAndRun(File javaFile, String editedFile) throws IOException, InterruptedException {
+
+    // Options passed to every in-process compilation
+    private static final List<String> COMPILER_OPTIONS = List.of("-proc:none");
+
+    // In-process compiler, stays warm between runs (null when the runtime has no javac)
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    // Shared between compilations so the platform classes are only indexed once
+    private StandardJavaFileManager standardFileManager;
+    // Compiled classes by source hash, so unchanged sources skip the compiler
+    private final BuildCache buildCache;
+    // Run programs in a persistent worker JVM, a fresh process per run is the fallback
+    private final boolean useWorker = true;
+    private final ExecutionWorker worker = new ExecutionWorker();
+
+    public CompilerService() {
+        this(Path.of(System.getProperty("user.home"), ".jde", "build-cache"));
+    }
+
+    public CompilerService(Path buildCacheDir) {
+        this.buildCache = new BuildCache(buildCacheDir);
+    }
+
+    // Starts the worker JVM so the first run does not wait for it
+    public void prestartWorker() {
+        if (useWorker) worker.startAsync();
+    }
+
+    // Compiles the source in memory, only the class bytes are kept
+    // Sources that compiled before are served from the build cache
+    public synchronized CompilationResult compile(String className, String source) {
+        CompileEvent event = new CompileEvent();
+        event.begin();
+        event.className = className;
+        long start = System.nanoTime();
+
+        String cacheKey = BuildCache.key(className, source, COMPILER_OPTIONS);
+        CompilationResult cached = buildCache.get(cacheKey);
+        if (cached != null) { // Warnings of the first compile included
+            Metrics.record(Metrics.COMPILE_CACHED, start);
+            event.cached = true;
+            event.success = true;
+            event.diagnostics = cached.diagnostics().size();
+            event.commit();
+            return cached;
+        }
+
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler available");
+        }
+        if (standardFileManager == null) {
+            standardFileManager = compiler.getStandardFileManager(null, Locale.getDefault(), null);
+        }
+
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager);
+        JavaFileObject sourceFile = new InMemoryFileManager.SourceFile(className, source);
+
+        boolean success = compiler.getTask(null, fileManager, collector, COMPILER_OPTIONS, null, List.of(sourceFile)).call();
+
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            diagnostics.add(toCompileDiagnostic(diagnostic));
+        }
+        CompilationResult result = new CompilationResult(success, diagnostics, fileManager.getClassBytes());
+        if (success) {
+            buildCache.put(cacheKey, result);
+        }
+
+        Metrics.record(Metrics.COMPILE, start);
+        event.success = success;
+        event.diagnostics = diagnostics.size();
+        event.commit();
+        return result;
+    }
+
+    // Compiles and runs the source on a virtual thread
+    // output receives the program's output as it is produced, onFinished is called once it ended
+    // The run is stopped once it takes longer than timeout
+    public ProgramRun startRun(File javaFile, String source, Duration timeout, Consumer<String> output, Runnable onFinished) {
+        return startRun("run-" + javaFile.getName(), timeout, output, onFinished,
+                programRun -> compileAndRun(javaFile, source, programRun, output));
+    }
+
+    // Runs classes compiled elsewhere (a project build), otherwise like startRun
+    public ProgramRun startRun(Map<String, byte[]> classes, String mainClass, Duration timeout, Consumer<String> output, Runnable onFinished) {
+        return startRun("run-" + mainClass, timeout, output, onFinished,
+                programRun -> runClasses(classes, mainClass, programRun, output));
+    }
+
+    private ProgramRun startRun(String threadName, Duration timeout, Consumer<String> output, Runnable onFinished, RunBody body) {
+        ProgramRun programRun = new ProgramRun();
+
+        Thread.ofVirtual().name(threadName).start(() -> {
+            Thread watchdog = Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(timeout);
+                    programRun.stop("Timed out after " + timeout.toSeconds() + " s");
+                } catch (InterruptedException e) {
+                    // Finished in time
+                }
+            });
+
+            try {
+                body.run(programRun);
+            } catch (IOException e) {
+                output.accept(e.getMessage() + "\n");
+            } catch (InterruptedException e) {
+                // Stopped while waiting for the process
+            } finally {
+                watchdog.interrupt();
+                programRun.detach();
+            }
+
+            if (programRun.isStopped()) {
+                output.accept(programRun.getStopReason() + "\n");
+            }
+            onFinished.run();
+        });
+
+        return programRun;
+    }
+
+    public StringBuilder compileAndRun(File javaFile, String source) throws IOException, InterruptedException {
+        StringBuilder output = new StringBuilder();
+        compileAndRun(javaFile, source, new ProgramRun(), output::append);
+        return output;
+    }
+
+    private void compileAndRun(File javaFile, String source, ProgramRun programRun, Consumer<String> output) throws IOException, InterruptedException {
+        // File name and class name of the Java file
+        String fileName = javaFile.getName();
+        String className = fileName.substring(0, fileName.lastIndexOf('.'));
+
+        if (compiler == null) { // Fall back to an external javac
+            compileAndRunWithJavac(javaFile, programRun, output);
+            return;
+        }
+
+        // Compile the buffer in memory
+        CompilationResult result = compile(className, source);
+        for (CompileDiagnostic diagnostic : result.diagnostics()) {
+            output.accept(diagnostic + "\n");
+        }
+        if (!result.success()) {
+            output.accept("Compilation failed\n");
+            return;
+        }
+
+        String mainClass = result.findClass(className);
+        if (mainClass == null) {
+            output.accept("No class named " + className + "\n");
+            return;
+        }
+
+        if (programRun.isStopped()) return;
+        runClasses(result.classes(), mainClass, programRun, output);
+    }
+
+    // Runs mainClass in the worker, or in a fresh process if the worker is busy or unavailable
+    private void runClasses(Map<String, byte[]> classes, String mainClass, ProgramRun programRun, Consumer<String> output) throws IOException, InterruptedException {
+        RunEvent event = new RunEvent();
+        event.begin();
+        event.mainClass = mainClass;
+        long start = System.nanoTime();
+
+        if (useWorker) {
+            try {
+                // Busy with another tab's program, run this one in a fresh process instead
+                if (worker.tryRun(classes, mainClass, output, programRun)) {
+                    recordRun(event, start, true, programRun);
+                    return;
+                }
+            } catch (IOException e) { // Worker unavailable, run in a fresh process instead
+                worker.stop();
+            }
+        }
+
+        // The child JVM needs the classes on disk, only for the duration of the run
+        Path classDir = Files.createTempDirectory("jde-run");
+        try {
+            writeClasses(classes, classDir);
+            Process run = new ProcessBuilder("java", "-cp", classDir.toString(), mainClass)
+                    .redirectErrorStream(true)
+                    .start();
+            programRun.attach(run);
+            readOutput(run, output);
+            recordRun(event, start, false, programRun);
+        } finally {
+            deleteRecursively(classDir);
+        }
+    }
+
+    private interface RunBody {
+        void run(ProgramRun programRun) throws IOException, InterruptedException;
+    }
+
+    private static void recordRun(RunEvent event, long start, boolean inWorker, ProgramRun programRun) {
+        Metrics.record(Metrics.RUN, start);
+        event.worker = inWorker;
+        event.stopped = programRun.isStopped();
+        event.commit();
+    }
+
+    private void compileAndRunWithJavac(File javaFile, ProgramRun programRun, Consumer<String> output) throws IOException, InterruptedException {
         // Directory, file name, and class name of the Java file
         String dir = javaFile.getParent();
         String fileName = javaFile.getName();
         String className = fileName.substring(0, fileName.lastIndexOf('.'));
 
         // Compile the Java file
-        Process compile = new ProcessBuilder("javac", editedFile)
+        Process compile = new ProcessBuilder("javac", javaFile.getAbsolutePath())
                 .directory(new File(dir))
+                .redirectErrorStream(true)
                 .start();
-        int compileResult = compile.waitFor();
+        programRun.attach(compile);
+        int compileResult = readOutput(compile, output);
+        if (programRun.isStopped()) return;
         if (compileResult != 0) {
-            StringBuilder result = new StringBuilder();
-            result.append("Compilation failed with exit code ").append(compileResult);
-            return result;
+            output.accept("Compilation failed with exit code " + compileResult + "\n");
+            return;
         }
 
         // Run the compiled class
         Process run = new ProcessBuilder("java", "-cp", dir, className)
                 .redirectErrorStream(true)
                 .start();
+        programRun.attach(run);
+        readOutput(run, output);
+    }
 
-        // Capture output from the process
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(run.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+    // Streams output from the process as it arrives, returns its exit code
+    private static int readOutput(Process process, Consumer<String> output) throws IOException, InterruptedException {
+        try (Reader reader = new InputStreamReader(process.getInputStream())) {
+            char[] chunk = new char[8192];
+            int read;
+            while ((read = reader.read(chunk)) >= 0) {
+                output.accept(new String(chunk, 0, read));
             }
         }
 
-        run.waitFor(); // Wait for the process to finish
+        return process.waitFor(); // Wait for the process to finish
+    }
 
-        return output;
+    private static void writeClasses(Map<String, byte[]> classes, Path dir) throws IOException {
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Path classFile = dir.resolve(entry.getKey().replace('.', File.separatorChar) + ".class");
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, entry.getValue());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    static CompileDiagnostic toCompileDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
+        CompileDiagnostic.Kind kind = switch (diagnostic.getKind()) {
+            case ERROR -> CompileDiagnostic.Kind.ERROR;
+            case WARNING, MANDATORY_WARNING -> CompileDiagnostic.Kind.WARNING;
+            default -> CompileDiagnostic.Kind.NOTE;
+        };
+        long line = Math.max(diagnostic.getLineNumber(), 0); // NOPOS is -1
+        long column = Math.max(diagnostic.getColumnNumber(), 0);
+        return new CompileDiagnostic(line, column, diagnostic.getStartPosition(), diagnostic.getEndPosition(),
+                diagnostic.getMessage(Locale.getDefault()), kind);
     }
 }
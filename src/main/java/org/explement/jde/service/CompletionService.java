@@ -0,0 +1,282 @@
+package org.explement.jde.service;
+
+import org.explement.jde.metrics.Metrics;
+import org.explement.jde.model.Completion;
+import org.explement.jde.model.Symbol;
+
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+// Suggests names for the identifier at the caret: declarations of the open tabs, keywords and the JDK's public API
+// The JDK names are read from the runtime image once, then memory-mapped from disk on later starts
+public class CompletionService {
+
+    // Keywords and literals besides the highlighter's keywords
+    private static final String[] WORDS = {
+            "boolean", "byte", "char", "short", "int", "long", "float", "double",
+            "true", "false", "null", "var", "record", "yield", "sealed", "permits"
+    };
+    // How well a name matches: starts with the prefix, ignoring case or not, or has its chars in order
+    private static final int EXACT_PREFIX = 0;
+    private static final int PREFIX = 1;
+    private static final int CAMEL_HUMPS = 2; // Every char at the start of a word, "gAV" for getAllValues
+    private static final int SUBSEQUENCE = 3;
+    // Where a name comes from, open tabs first
+    private static final int SOURCE_TAB = 0;
+    private static final int SOURCE_KEYWORD = 1;
+    private static final int SOURCE_JDK = 2;
+
+    private final Path cacheDir;
+    private final SymbolIndexService symbolIndex;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "completion-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Null until loaded, JDK names are left out until then
+    private volatile CompletionTable jdk;
+
+    public CompletionService(Path cacheDir, SymbolIndexService symbolIndex) {
+        this.cacheDir = cacheDir;
+        this.symbolIndex = symbolIndex;
+    }
+
+    // Maps the JDK names of this runtime, indexing them first if they are not on disk yet, completes with a summary
+    public CompletableFuture<String> load() {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            String key = Runtime.version() + " " + System.getProperty("java.home");
+            Path file = cacheDir.resolve("jdk-" + Integer.toHexString(key.hashCode()) + ".completion");
+
+            CompletionTable table = CompletionTable.open(file, key);
+            String action = "Loaded";
+            if (table == null) {
+                table = CompletionTable.of(key, jdkEntries());
+                action = "Indexed";
+                try {
+                    table.write(file);
+                } catch (IOException e) {
+                    System.out.println(e.getMessage()); // Kept in memory, indexed again next start
+                }
+            }
+            jdk = table;
+            return action + " " + table.size() + " JDK names in " + (System.nanoTime() - start) / 1_000_000 + " ms";
+        }, executor);
+    }
+
+    // Best names for prefix, at most limit, member is true right after a '.', where JDK members are offered instead of keywords
+    // Tabs with pending edits should be refreshed first
+    public List<Completion> complete(String prefix, boolean member, int limit) {
+        long start = System.nanoTime();
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        List<Ranked> ranked = new ArrayList<>();
+
+        for (Symbol symbol : symbolIndex.allSymbols()) {
+            if (symbol.kind() == Symbol.Kind.CONSTRUCTOR) continue; // The class itself is offered
+            int match = match(symbol.name(), prefix, lowerPrefix);
+            if (match >= 0) ranked.add(new Ranked(new Completion(symbol.name(), symbol.kind(), symbol.container()), match, SOURCE_TAB));
+        }
+        if (!member) {
+            for (String[] words : List.of(SyntaxHighlighterService.KEYWORDS, WORDS)) {
+                for (String word : words) {
+                    int match = match(word, prefix, lowerPrefix);
+                    if (match >= 0) ranked.add(new Ranked(new Completion(word, null, "keyword"), match, SOURCE_KEYWORD));
+                }
+            }
+        }
+        CompletionTable table = jdk;
+        if (table != null && !prefix.isEmpty()) addJdkNames(table, prefix, lowerPrefix, member, limit, ranked);
+
+        ranked.sort(Comparator.comparingInt(Ranked::match)
+                .thenComparingInt(Ranked::source)
+                .thenComparingInt(r -> r.completion().name().length())
+                .thenComparing(r -> r.completion().name()));
+        List<Completion> completions = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Ranked r : ranked) {
+            if (completions.size() == limit) break;
+            Completion completion = r.completion();
+            // Overloads and names declared in a tab as well as in the JDK are offered once
+            if (seen.add(completion.name() + " " + completion.kind())) completions.add(completion);
+        }
+        Metrics.record(Metrics.COMPLETION, start);
+        return completions;
+    }
+
+    // The limit best JDK names, only decoding those that make it
+    // The prefix range comes from a binary search, the bucket around it is only scanned when the range alone is too short
+    private static void addJdkNames(CompletionTable table, String prefix, String lowerPrefix, boolean member, int limit, List<Ranked> ranked) {
+        // Worst kept first, ordered by match, length and then table order
+        PriorityQueue<long[]> best = new PriorityQueue<>(Comparator.comparingLong((long[] r) -> r[0]).reversed());
+
+        int[] range = table.prefixRange(lowerPrefix);
+        for (int entry = range[0]; entry < range[1]; entry++) {
+            offer(table, entry, match(table.name(entry), prefix, lowerPrefix), member, limit, best);
+        }
+        int[] bucket = table.bucket(lowerPrefix);
+        if (best.size() < limit && bucket != null && prefix.length() > 1) {
+            for (int entry = bucket[0]; entry < bucket[1]; entry++) {
+                if (entry == range[0]) entry = range[1]; // Already ranked
+                if (entry >= bucket[1]) break;
+                offer(table, entry, match(table.name(entry), prefix, lowerPrefix), member, limit, best);
+            }
+        }
+
+        for (long[] r : best) {
+            int entry = (int) r[1];
+            Completion completion = new Completion(table.name(entry).toString(), table.kind(entry), table.detail(entry));
+            ranked.add(new Ranked(completion, (int) (r[0] >>> 48), SOURCE_JDK));
+        }
+    }
+
+    private static void offer(CompletionTable table, int entry, int match, boolean member, int limit, PriorityQueue<long[]> best) {
+        if (match < 0) return;
+        if (!member && !table.kind(entry).isType()) return; // Unqualified JDK members are rarely in scope
+
+        long rank = (long) match << 48 | (long) table.name(entry).length() << 32 | entry;
+        if (best.size() < limit) {
+            best.add(new long[] { rank, entry });
+        } else if (rank < best.peek()[0]) {
+            best.poll();
+            best.add(new long[] { rank, entry });
+        }
+    }
+
+    // How name matches, -1 when it does not, the first char has to match ignoring case
+    static int match(CharSequence name, String prefix, String lowerPrefix) {
+        int length = prefix.length();
+        if (name.length() < length) return -1;
+        if (length == 0) return EXACT_PREFIX;
+
+        boolean exact = true;
+        int i = 0;
+        while (i < length && Character.toLowerCase(name.charAt(i)) == lowerPrefix.charAt(i)) {
+            if (name.charAt(i) != prefix.charAt(i)) exact = false;
+            i++;
+        }
+        if (i == length) return exact ? EXACT_PREFIX : PREFIX;
+        if (i == 0) return -1;
+
+        int humps = 1;
+        for (int j = 1; j < name.length() && humps < length; j++) {
+            boolean hump = Character.isUpperCase(name.charAt(j)) || name.charAt(j - 1) == '_';
+            if (hump && Character.toLowerCase(name.charAt(j)) == lowerPrefix.charAt(humps)) humps++;
+        }
+        if (humps == length) return CAMEL_HUMPS;
+
+        int matched = 1;
+        for (int j = 1; j < name.length() && matched < length; j++) {
+            if (Character.toLowerCase(name.charAt(j)) == lowerPrefix.charAt(matched)) matched++;
+        }
+        return matched == length ? SUBSEQUENCE : -1;
+    }
+
+    // Public types of the exported packages in the runtime image, and the public and protected members of each
+    // Members with the same name and kind are one entry, detailed with their class only when there is one
+    private static List<CompletionTable.Entry> jdkEntries() {
+        Set<String> exported = new HashSet<>(); // module/package/path
+        for (ModuleReference module : ModuleFinder.ofSystem().findAll()) {
+            ModuleDescriptor descriptor = module.descriptor();
+            for (ModuleDescriptor.Exports exports : descriptor.exports()) {
+                if (!exports.isQualified()) exported.add(descriptor.name() + "/" + exports.source().replace('.', '/'));
+            }
+        }
+
+        List<Path> classFiles = new ArrayList<>();
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        try (Stream<Path> files = Files.walk(jrt.getPath("/modules"))) {
+            files.forEach(file -> {
+                if (file.getNameCount() > 3 && file.toString().endsWith(".class")
+                        && exported.contains(file.subpath(1, file.getNameCount() - 1).toString())) {
+                    classFiles.add(file);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+
+        Map<String, JdkType> types = new ConcurrentHashMap<>(); // Public classes by internal name
+        classFiles.parallelStream().forEach(file -> {
+            try {
+                ClassFileReader reader = new ClassFileReader(Files.readAllBytes(file));
+                if ((reader.access & ClassFileReader.ACC_PUBLIC) != 0 && (reader.access & ClassFileReader.ACC_SYNTHETIC) == 0) {
+                    String superName = reader.supertypes.isEmpty() ? "" : reader.supertypes.get(0);
+                    types.put(reader.name, new JdkType(reader.name, kindOf(reader.access, superName), reader.members));
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println(file + ": " + e.getMessage());
+            }
+        });
+
+        List<CompletionTable.Entry> entries = new ArrayList<>();
+        Map<String, String> memberOwners = new HashMap<>(); // "name kind" to its class, "" once there are several
+        for (JdkType type : types.values()) {
+            if (!isVisible(type.name(), types)) continue;
+
+            int packageEnd = type.name().lastIndexOf('/');
+            int nameStart = Math.max(packageEnd, type.name().lastIndexOf('$')) + 1;
+            String container = nameStart == 0 ? "" : type.name().substring(0, nameStart - 1).replace('/', '.').replace('$', '.');
+            entries.add(new CompletionTable.Entry(type.name().substring(nameStart), container, type.kind()));
+
+            String owner = type.name().substring(packageEnd + 1).replace('$', '.');
+            for (ClassFileReader.Member member : type.members()) {
+                Symbol.Kind kind = member.method() ? Symbol.Kind.METHOD
+                        : (member.access() & ClassFileReader.ACC_ENUM) != 0 ? Symbol.Kind.ENUM_CONSTANT : Symbol.Kind.FIELD;
+                memberOwners.merge(member.name() + " " + kind.name(), owner, (known, other) -> known.equals(other) ? known : "");
+            }
+        }
+        memberOwners.forEach((memberKey, owner) -> {
+            int space = memberKey.indexOf(' ');
+            entries.add(new CompletionTable.Entry(memberKey.substring(0, space), owner, Symbol.Kind.valueOf(memberKey.substring(space + 1))));
+        });
+        return entries;
+    }
+
+    // A nested class is only usable when every class around it is public too, local and anonymous ones never are
+    private static boolean isVisible(String name, Map<String, JdkType> types) {
+        int nested = name.indexOf('$', name.lastIndexOf('/') + 1);
+        while (nested >= 0) {
+            if (nested + 1 == name.length() || Character.isDigit(name.charAt(nested + 1)) || !types.containsKey(name.substring(0, nested))) {
+                return false;
+            }
+            nested = name.indexOf('$', nested + 1);
+        }
+        return true;
+    }
+
+    private static Symbol.Kind kindOf(int access, String superName) {
+        if ((access & ClassFileReader.ACC_ANNOTATION) != 0) return Symbol.Kind.ANNOTATION;
+        if ((access & ClassFileReader.ACC_INTERFACE) != 0) return Symbol.Kind.INTERFACE;
+        if ((access & ClassFileReader.ACC_ENUM) != 0) return Symbol.Kind.ENUM;
+        if (superName.equals("java/lang/Record")) return Symbol.Kind.RECORD;
+        return Symbol.Kind.CLASS;
+    }
+
+    // What the index keeps of a class file
+    private record JdkType(String name, Symbol.Kind kind, List<ClassFileReader.Member> members) {
+    }
+
+    private record Ranked(Completion completion, int match, int source) {
+    }
+}
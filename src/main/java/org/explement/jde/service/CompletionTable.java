@@ -0,0 +1,252 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.Symbol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Completion names sorted ignoring case, in one buffer that is written once and memory-mapped on later starts
+// Entries are bucketed by their lower-case first char (the first level of a trie), a prefix is then a binary search
+// inside one bucket and a fuzzy query only scans that bucket. Names and details are ASCII, read in place
+class CompletionTable {
+
+    private static final int MAGIC = 0x4A444331; // "JDC1"
+    private static final int BUCKETS = 128;
+    // Name offset, detail offset, kind
+    private static final int ENTRY_BYTES = 12;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    // Entries of bucket c are [bucketStarts[c], bucketStarts[c + 1])
+    private final int[] bucketStarts = new int[BUCKETS + 1];
+    private final int entriesStart;
+    private final int stringsStart;
+
+    private CompletionTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        buffer.position(0);
+        buffer.getInt(); // Magic
+        int keyLength = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + keyLength); // Key
+        count = buffer.getInt();
+        for (int i = 0; i <= BUCKETS; i++) {
+            bucketStarts[i] = buffer.getInt();
+        }
+        entriesStart = buffer.position();
+        stringsStart = entriesStart + count * ENTRY_BYTES;
+    }
+
+    record Entry(String name, String detail, Symbol.Kind kind) {
+    }
+
+    // Maps a table written for key, null if there is none or it was written for another key
+    static CompletionTable open(Path file, String key) {
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after close
+            if (buffer.getInt() != MAGIC || !readString(buffer, buffer.position()).equals(key)) return null;
+            return new CompletionTable(buffer);
+        } catch (IOException | RuntimeException e) {
+            System.out.println(e.getMessage()); // Corrupt or partial, build it again
+            return null;
+        }
+    }
+
+    // A table of entries over a heap buffer, entries with non-ASCII text are left out and duplicates dropped
+    static CompletionTable of(String key, List<Entry> entries) {
+        return new CompletionTable(ByteBuffer.wrap(encode(key, entries)));
+    }
+
+    // Writes the table's buffer to file, replacing it at once
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "completion", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.write(buffer.duplicate().position(0));
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int size() {
+        return count;
+    }
+
+    // Entries whose name starts with lowerPrefix ignoring case, as [from, to)
+    int[] prefixRange(String lowerPrefix) {
+        int[] bucket = bucket(lowerPrefix);
+        if (bucket == null) return new int[] { 0, 0 };
+
+        int low = bucket[0];
+        int high = bucket[1];
+        while (low < high) { // First entry not before the prefix
+            int middle = (low + high) >>> 1;
+            if (compareToPrefix(middle, lowerPrefix) < 0) low = middle + 1;
+            else high = middle;
+        }
+        int from = low;
+        high = bucket[1];
+        while (low < high) { // First entry past the prefix
+            int middle = (low + high) >>> 1;
+            if (compareToPrefix(middle, lowerPrefix) <= 0) low = middle + 1;
+            else high = middle;
+        }
+        return new int[] { from, low };
+    }
+
+    // Entries whose name starts with the first char of lowerQuery ignoring case, as [from, to), null for a non-ASCII char
+    int[] bucket(String lowerQuery) {
+        if (lowerQuery.isEmpty() || lowerQuery.charAt(0) >= BUCKETS) return null;
+        char first = lowerQuery.charAt(0);
+        return new int[] { bucketStarts[first], bucketStarts[first + 1] };
+    }
+
+    // The name of an entry, read from the buffer on each access
+    CharSequence name(int entry) {
+        return new Text(stringsStart + buffer.getInt(entriesStart + entry * ENTRY_BYTES));
+    }
+
+    String detail(int entry) {
+        return readString(buffer, stringsStart + buffer.getInt(entriesStart + entry * ENTRY_BYTES + 4));
+    }
+
+    Symbol.Kind kind(int entry) {
+        return Symbol.Kind.values()[buffer.getInt(entriesStart + entry * ENTRY_BYTES + 8)];
+    }
+
+    // Negative when the name sorts before every name starting with lowerPrefix, 0 when it starts with it, positive after
+    private int compareToPrefix(int entry, String lowerPrefix) {
+        CharSequence name = name(entry);
+        int length = Math.min(name.length(), lowerPrefix.length());
+        for (int i = 0; i < length; i++) {
+            int difference = lower(name.charAt(i)) - lowerPrefix.charAt(i);
+            if (difference != 0) return difference;
+        }
+        return name.length() < lowerPrefix.length() ? -1 : 0;
+    }
+
+    // Header (magic, key, count, bucket starts), the entries, then every distinct string once as a u2 length and its bytes
+    private static byte[] encode(String key, List<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (isAscii(entry.name()) && !entry.name().isEmpty() && isAscii(entry.detail())) sorted.add(entry);
+        }
+        sorted.sort(Comparator.comparing((Entry entry) -> entry.name().toLowerCase(Locale.ROOT))
+                .thenComparing(Entry::name)
+                .thenComparing(Entry::kind)
+                .thenComparing(Entry::detail));
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        int[] bucketStarts = new int[BUCKETS + 1];
+        int count = 0;
+        try (DataOutputStream entriesOut = new DataOutputStream(entryBytes); DataOutputStream stringsOut = new DataOutputStream(strings)) {
+            Entry last = null;
+            for (Entry entry : sorted) {
+                if (entry.equals(last)) continue;
+                last = entry;
+                entriesOut.writeInt(stringOffset(entry.name(), stringsOut, strings, stringOffsets));
+                entriesOut.writeInt(stringOffset(entry.detail(), stringsOut, strings, stringOffsets));
+                entriesOut.writeInt(entry.kind().ordinal());
+                bucketStarts[lower(entry.name().charAt(0)) + 1] = ++count; // Ends up as the end of each bucket
+            }
+            for (int i = 1; i <= BUCKETS; i++) { // Empty buckets start where the one before ends
+                bucketStarts[i] = Math.max(bucketStarts[i], bucketStarts[i - 1]);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(keyBytes.length);
+            out.write(keyBytes);
+            out.writeInt(count);
+            for (int start : bucketStarts) {
+                out.writeInt(start);
+            }
+            entriesOut.flush();
+            stringsOut.flush();
+            entryBytes.writeTo(out);
+            strings.writeTo(out);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory streams do not fail
+        }
+    }
+
+    private static int stringOffset(String text, DataOutputStream out, ByteArrayOutputStream strings, Map<String, Integer> offsets) throws IOException {
+        Integer offset = offsets.get(text);
+        if (offset != null) return offset;
+        out.flush();
+        offset = strings.size();
+        out.writeShort(text.length());
+        out.writeBytes(text);
+        offsets.put(text, offset);
+        return offset;
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getShort(position) & 0xFFFF];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= BUCKETS) return false;
+        }
+        return true;
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    // A string of the table read in place, the matching runs over these without decoding them
+    private class Text implements CharSequence {
+        private final int start;
+        private final int length;
+
+        Text(int position) {
+            this.start = position + 2;
+            this.length = buffer.getShort(position) & 0xFFFF;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.explement.jde.service;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import org.explement.jde.metrics.DiagnosticsEvent;
+import org.explement.jde.metrics.Metrics;
+import org.explement.jde.model.CompileDiagnostic;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Parses and attributes the edited tab in the background with javac, reports its errors and warnings
+// A newer pass or edit cancels the running one at the next compiler phase, slow passes make the editor wait longer before the next
+public class DiagnosticsService {
+
+    private static final List<String> COMPILER_OPTIONS = List.of("-proc:none", "-Xlint:all", "-Xlint:-serial", "-Xlint:-processing");
+    // Wait after the last edit, at least the minimum and twice the last pass, so passes never queue up behind typing
+    private static final long MIN_DELAY_MILLIS = 300;
+    private static final long MAX_DELAY_MILLIS = 3_000;
+    // Reporting stops here, more only slows the editor down
+    private static final int MAX_DIAGNOSTICS = 500;
+
+    // In-process compiler (null when the runtime has no javac)
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    // Shared between passes so the platform classes are only indexed once
+    private StandardJavaFileManager fileManager;
+    // One pass at a time, at low priority so it never takes a core from the JavaFX thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "diagnostics");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    // Bumped by every pass and cancel, a pass keeps going only while it is the latest
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long lastPassMillis;
+
+    // Runs a pass at startup, so the first real one finds javac loaded and compiled
+    public void prestart() {
+        analyze("Warmup.java", "class Warmup { String s = java.util.List.of(1).toString(); }", null, diagnostics -> { });
+    }
+
+    // How long to wait after an edit before the next pass
+    public Duration getDelay() {
+        return Duration.ofMillis(Math.clamp(lastPassMillis * 2, MIN_DELAY_MILLIS, MAX_DELAY_MILLIS));
+    }
+
+    // Stops the running pass, its result is never reported
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    // Checks text as the file at path, classPath (may be null) holds the classes it can use besides the JDK
+    // onDone runs on the diagnostics thread, and only if no newer pass or cancel came first
+    public void analyze(String path, String text, Path classPath, Consumer<List<CompileDiagnostic>> onDone) {
+        if (compiler == null) return;
+        long pass = generation.incrementAndGet();
+        executor.execute(() -> {
+            if (generation.get() != pass) return; // Superseded while queued
+
+            DiagnosticsEvent event = new DiagnosticsEvent();
+            event.begin();
+            long start = System.nanoTime();
+            event.characters = text.length();
+
+            List<CompileDiagnostic> diagnostics = run(path, text, classPath, pass, event);
+
+            event.cancelled = diagnostics == null;
+            event.commit();
+            if (diagnostics == null) return;
+
+            lastPassMillis = (System.nanoTime() - start) / 1_000_000;
+            Metrics.record(Metrics.DIAGNOSTICS, start);
+            onDone.accept(diagnostics);
+        });
+    }
+
+    // Diagnostics of one pass, null if it was cancelled
+    private List<CompileDiagnostic> run(String path, String text, Path classPath, long pass, DiagnosticsEvent event) {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        try {
+            if (fileManager == null) {
+                fileManager = compiler.getStandardFileManager(null, Locale.getDefault(), null);
+            }
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classPath == null ? List.of() : List.of(classPath));
+
+            JavacTask task = (JavacTask) compiler.getTask(null, fileManager, collector, COMPILER_OPTIONS, null,
+                    List.of(new TabSource(path, text)));
+            task.addTaskListener(new TaskListener() {
+                @Override
+                public void started(TaskEvent e) {
+                    if (generation.get() != pass) throw new CancellationException(); // Unwinds out of javac
+                }
+            });
+
+            event.phase = "parse";
+            task.parse();
+            if (generation.get() != pass) return null;
+            // Attributing code that does not parse only adds follow-up errors
+            if (!hasErrors(collector)) {
+                event.phase = "analyze";
+                task.analyze();
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } catch (RuntimeException e) { // Cancelled, javac wraps what the listener threw
+            if (generation.get() == pass) System.out.println(e.getMessage());
+            return null;
+        }
+        if (generation.get() != pass) return null;
+
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            if (diagnostics.size() == MAX_DIAGNOSTICS) break;
+            diagnostics.add(CompilerService.toCompileDiagnostic(diagnostic));
+        }
+        event.diagnostics = diagnostics.size();
+        return diagnostics;
+    }
+
+    private static boolean hasErrors(DiagnosticCollector<JavaFileObject> collector) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) return true;
+        }
+        return false;
+    }
+
+    // The tab's text under its file's name, tabs without a file accept any public class name
+    private static class TabSource extends SimpleJavaFileObject {
+        private final String text;
+        private final boolean named;
+
+        TabSource(String path, String text) {
+            super(new File(path).isAbsolute() ? new File(path).toURI() : URI.create("string:///" + new File(path).getName()), Kind.SOURCE);
+            this.text = text;
+            this.named = new File(path).isAbsolute();
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+
+        @Override
+        public boolean isNameCompatible(String simpleName, Kind kind) {
+            return !named || super.isNameCompatible(simpleName, kind);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.explement.jde.service;
+
+import org.explement.jde.worker.WorkerMain;
+import org.explement.jde.worker.WorkerProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Persistent JVM that runs compiled programs without paying JVM startup on every run
+public class ExecutionWorker {
+
+    private Process process;
+    private DataOutputStream toWorker;
+    private DataInputStream fromWorker;
+    // Held for the whole run, the worker runs one program at a time
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    // Starts the worker JVM ahead of time on a background thread
+    public void startAsync() {
+        Thread thread = new Thread(() -> {
+            try {
+                ensureStarted();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }, "execution-worker-start");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Runs mainClass in the worker, streaming everything it prints to output
+    // Returns false without running anything if another program is using the worker
+    public boolean tryRun(Map<String, byte[]> classes, String mainClass, Consumer<String> output, ProgramRun programRun) throws IOException {
+        if (!runLock.tryLock()) return false;
+        try {
+            programRun.attach(this);
+            run(classes, mainClass, output);
+            return true;
+        } finally {
+            programRun.detach();
+            runLock.unlock();
+        }
+    }
+
+    private void run(Map<String, byte[]> classes, String mainClass, Consumer<String> output) throws IOException {
+        DataOutputStream toWorker;
+        DataInputStream fromWorker;
+        synchronized (this) {
+            ensureStarted();
+            toWorker = this.toWorker;
+            fromWorker = this.fromWorker;
+        }
+
+        toWorker.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            toWorker.writeUTF(entry.getKey());
+            toWorker.writeInt(entry.getValue().length);
+            toWorker.write(entry.getValue());
+        }
+        toWorker.writeUTF(mainClass);
+        toWorker.flush();
+
+        // One decoder per stream, so a char split across two frames comes out whole
+        StreamDecoder out = new StreamDecoder();
+        StreamDecoder err = new StreamDecoder();
+        try {
+            while (true) {
+                byte type = fromWorker.readByte();
+                if (type == WorkerProtocol.FRAME_DONE) {
+                    flush(out, err, output);
+                    fromWorker.readBoolean(); // failed, the stack trace is already in the output
+                    boolean recycle = fromWorker.readBoolean();
+                    if (recycle) { // Replace it before the next run needs it
+                        stop();
+                        startAsync();
+                    }
+                    return;
+                }
+
+                byte[] bytes = new byte[fromWorker.readInt()];
+                fromWorker.readFully(bytes);
+                String text = (type == WorkerProtocol.FRAME_ERR ? err : out).decode(bytes);
+                if (!text.isEmpty()) output.accept(text);
+            }
+        } catch (EOFException e) { // The program called System.exit, crashed the JVM or was stopped
+            flush(out, err, output);
+            int exitCode = waitForExit();
+            if (exitCode >= 0) output.accept("Process exited with code " + exitCode + "\n");
+            stop();
+            startAsync();
+        }
+    }
+
+    private static void flush(StreamDecoder out, StreamDecoder err, Consumer<String> output) {
+        String rest = out.finish() + err.finish();
+        if (!rest.isEmpty()) output.accept(rest);
+    }
+
+    // Kills the worker together with any processes the program started, ending the current run
+    public synchronized void stop() {
+        if (process != null) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            process = null;
+        }
+    }
+
+    private synchronized void ensureStarted() throws IOException {
+        if (process != null && process.isAlive()) return;
+
+        process = new ProcessBuilder(workerCommand())
+                .redirectError(ProcessBuilder.Redirect.INHERIT) // Program output is framed on stdout
+                .start();
+        toWorker = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        fromWorker = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+    }
+
+    private int waitForExit() {
+        Process process;
+        synchronized (this) {
+            process = this.process;
+        }
+        if (process == null) return -1; // Stopped from the editor
+
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    // Launches WorkerMain with the same runtime and module/class path as the editor
+    private static List<String> workerCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-XX:+UseSerialGC");
+
+        Module module = WorkerMain.class.getModule();
+        if (module.isNamed()) {
+            String modulePath = System.getProperty("jdk.module.path");
+            if (modulePath != null) { // Not needed inside the jlinked image
+                command.add("--module-path");
+                command.add(modulePath);
+            }
+            command.add("-m");
+            command.add(module.getName() + "/" + WorkerMain.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(WorkerMain.class.getName());
+        }
+        return command;
+    }
+
+    // UTF-8 decoder that keeps the bytes of an unfinished char until the next frame
+    private static class StreamDecoder {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private byte[] pending = new byte[0];
+
+        String decode(byte[] bytes) {
+            ByteBuffer in = ByteBuffer.allocate(pending.length + bytes.length).put(pending).put(bytes).flip();
+            CharBuffer chars = CharBuffer.allocate(in.remaining());
+            decoder.decode(in, chars, false);
+            pending = new byte[in.remaining()]; // At most the first bytes of one char
+            in.get(pending);
+            return chars.flip().toString();
+        }
+
+        // Whatever is left when the stream ends, a cut-off char becomes U+FFFD
+        String finish() {
+            ByteBuffer in = ByteBuffer.wrap(pending);
+            CharBuffer chars = CharBuffer.allocate(pending.length + 1);
+            decoder.decode(in, chars, true);
+            decoder.flush(chars);
+            decoder.reset();
+            pending = new byte[0];
+            return chars.flip().toString();
+        }
+    }
+}
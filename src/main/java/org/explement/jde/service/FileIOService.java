@@ -1,26 +1,242 @@
 package org.explement.jde.service;
 
-import java.io.*;
-import java.util.Scanner;
+import org.explement.jde.metrics.FileIOEvent;
+import org.explement.jde.metrics.Metrics;
+import org.explement.jde.model.FileContent;
+import org.explement.jde.model.FileFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 
 public class FileIOService {
-    public void saveFile(String content, File file) { // Save file using BufferedWriter
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(content);
+
+    private static final byte[] UTF_8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+    private static final byte[] UTF_16BE_BOM = { (byte) 0xFE, (byte) 0xFF };
+    private static final byte[] UTF_16LE_BOM = { (byte) 0xFF, (byte) 0xFE };
+
+    public void saveFile(String content, File file) { // Save a new file in the default format
+        saveFile(content, file, FileFormat.DEFAULT);
+    }
+
+    public void saveFile(String content, File file, FileFormat format) { // Save file in one bulk write, keeping its format
+        try {
+            writeAtomically(file.toPath(), content, format);
         } catch (IOException | NullPointerException e) {
             System.out.println(e.getMessage());
         }
     }
 
-    public String loadFile(File file) { // Load File using StringBuilder
-        StringBuilder sb = new StringBuilder();
-        try (Scanner fileReader = new Scanner(file)) {
-            while (fileReader.hasNextLine()) {
-                sb.append(fileReader.nextLine()).append("\n");
+    // Writes a temp file next to the target, syncs it, then renames it over the target
+    // A crash at any point leaves either the old file or the new one, never a torn one
+    // A symlinked target keeps its link, the file it points to is replaced, with its permissions, owner and ACL
+    public void writeAtomically(Path target, String content, FileFormat format) throws IOException {
+        FileIOEvent event = new FileIOEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        Path file = resolveLinks(target);
+        Path directory = file.getParent();
+        Path temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = encode(content, format);
+                event.bytes = bytes.remaining();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            if (Files.exists(file)) copyAttributes(file, temp); // createTempFile made it 0600
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(directory); // The rename itself survives a crash
+        } finally {
+            Files.deleteIfExists(temp); // Only still there if something failed
+        }
+
+        Metrics.record(Metrics.FILE_SAVE, start);
+        event.operation = "save";
+        event.path = target.toString();
+        event.commit();
+    }
+
+    // The file a path finally names, following symlinks even if the file does not exist yet
+    private static Path resolveLinks(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        if (Files.exists(absolute)) return absolute.toRealPath();
+        for (int hops = 0; Files.isSymbolicLink(absolute) && hops < 40; hops++) { // Dangling link, create what it points to
+            absolute = absolute.getParent().resolve(Files.readSymbolicLink(absolute)).normalize();
+        }
+        return absolute;
+    }
+
+    // Gives the new file the permissions, owner and ACL of the one it replaces, where the file system has them
+    private static void copyAttributes(Path from, Path to) throws IOException {
+        PosixFileAttributeView posix = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (posix != null) {
+            PosixFileAttributes attributes = Files.readAttributes(from, PosixFileAttributes.class);
+            posix.setPermissions(attributes.permissions());
+            try {
+                PosixFileAttributes created = posix.readAttributes();
+                if (!created.group().equals(attributes.group())) posix.setGroup(attributes.group());
+                if (!created.owner().equals(attributes.owner())) posix.setOwner(attributes.owner());
+            } catch (IOException e) { // Only allowed for root, the saving user owns the file then
+                System.out.println(e.getMessage());
             }
-        } catch (FileNotFoundException e) {
+        }
+        AclFileAttributeView acl = Files.getFileAttributeView(to, AclFileAttributeView.class);
+        if (acl != null) {
+            acl.setAcl(Files.getFileAttributeView(from, AclFileAttributeView.class).getAcl());
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) { // Directories cannot be opened on every platform (Windows), the rename is still done
+        }
+    }
+
+    public FileContent loadFile(File file) { // Load file through a FileChannel, detecting its format
+        FileIOEvent event = new FileIOEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            event.bytes = channel.size();
+            FileContent content = decode(read(channel));
+
+            Metrics.record(Metrics.FILE_LOAD, start);
+            event.operation = "load";
+            event.path = file.getPath();
+            event.commit();
+            return content;
+        } catch (IOException e) {
             System.out.println(e.getMessage());
+            return new FileContent("", FileFormat.DEFAULT);
+        }
+    }
+
+    // Encodes editor text ('\n' line endings) the way the file was stored
+    public ByteBuffer encode(String content, FileFormat format) {
+        String text = format.lineSeparator().equals("\n") ? content : content.replace("\n", format.lineSeparator());
+        byte[] encoded = text.getBytes(format.charset()); // Unmappable chars become the charset's replacement
+        if (!format.bom()) return ByteBuffer.wrap(encoded);
+
+        byte[] bom = bomFor(format.charset());
+        ByteBuffer withBom = ByteBuffer.allocate(bom.length + encoded.length);
+        withBom.put(bom).put(encoded).flip();
+        return withBom;
+    }
+
+    // Decodes file bytes, detecting BOM, charset and line separator
+    public FileContent decode(ByteBuffer bytes) {
+        int start = bytes.position();
+        Charset charset = StandardCharsets.UTF_8;
+        boolean bom = true;
+        if (startsWith(bytes, UTF_8_BOM)) {
+            bytes.position(bytes.position() + UTF_8_BOM.length);
+        } else if (startsWith(bytes, UTF_16BE_BOM)) {
+            charset = StandardCharsets.UTF_16BE;
+            bytes.position(bytes.position() + UTF_16BE_BOM.length);
+        } else if (startsWith(bytes, UTF_16LE_BOM)) {
+            charset = StandardCharsets.UTF_16LE;
+            bytes.position(bytes.position() + UTF_16LE_BOM.length);
+        } else {
+            bom = false;
+        }
+
+        CharBuffer chars;
+        try {
+            chars = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(bytes.duplicate());
+        } catch (CharacterCodingException e) { // Not UTF-8, every byte maps to a char in ISO-8859-1
+            charset = StandardCharsets.ISO_8859_1;
+            bom = false; // Whatever looked like a BOM is text, so saving writes the same bytes back
+            chars = charset.decode(bytes.position(start));
+        }
+
+        String lineSeparator = detectLineSeparator(chars);
+        return new FileContent(normalizeLineEndings(chars, lineSeparator), new FileFormat(charset, bom, lineSeparator));
+    }
+
+    // Into a heap buffer, the text is decoded into a String anyway, and a mapping would pin the file until GC
+    // (Windows then refuses to replace it on save); huge files go to MappedTextFile instead
+    private static ByteBuffer read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // Keep reading until the buffer is full
+        }
+        return buffer.flip();
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, byte[] prefix) {
+        if (bytes.remaining() < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(bytes.position() + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] bomFor(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_16BE)) return UTF_16BE_BOM;
+        if (charset.equals(StandardCharsets.UTF_16LE)) return UTF_16LE_BOM;
+        return UTF_8_BOM;
+    }
+
+    // The first line break decides the separator of the whole file
+    private static String detectLineSeparator(CharBuffer chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.get(i);
+            if (c == '\n') return "\n";
+            if (c == '\r') return i + 1 < chars.length() && chars.get(i + 1) == '\n' ? "\r\n" : "\r";
+        }
+        return FileFormat.DEFAULT.lineSeparator();
+    }
+
+    // The editor works with '\n' only, turns "\r\n" and lone '\r' into '\n'
+    private static String normalizeLineEndings(CharBuffer chars, String lineSeparator) {
+        if (lineSeparator.equals("\n") && !contains(chars, '\r')) return chars.toString();
+
+        char[] normalized = new char[chars.length()];
+        int length = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.get(i);
+            if (c == '\r') {
+                normalized[length++] = '\n';
+                if (i + 1 < chars.length() && chars.get(i + 1) == '\n') i++;
+            } else {
+                normalized[length++] = c;
+            }
+        }
+        return new String(normalized, 0, length);
+    }
+
+    private static boolean contains(CharBuffer chars, char target) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.get(i) == target) return true;
         }
-        return sb.toString();
+        return false;
     }
 }
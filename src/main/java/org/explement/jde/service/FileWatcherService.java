@@ -0,0 +1,151 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.FileContent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// Notices when another program changes an open file, without polling
+// Events are debounced per file, then mtime and size are compared, and only if those moved is the file read and hashed
+public class FileWatcherService {
+
+    // Bursts of events for one file (truncate, write, rename) settle into one check
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final FileIOService fileIOService;
+    // Called on the checking thread with the new content of a file that really changed
+    private final BiConsumer<Path, FileContent> onChange;
+
+    private final WatchService watchService;
+    // What the editor last knew to be on disk, by file
+    private final Map<Path, Stamp> known = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    private final Map<Path, ScheduledFuture<?>> pendingChecks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-watcher-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FileWatcherService(FileIOService fileIOService, BiConsumer<Path, FileContent> onChange) {
+        this.fileIOService = fileIOService;
+        this.onChange = onChange;
+
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            System.out.println(e.getMessage()); // Files are simply not watched
+        }
+        watchService = service;
+
+        if (watchService != null) {
+            Thread thread = new Thread(this::processEvents, "file-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // Watches file, diskText being what is on disk now, e.g. just loaded or saved
+    public void watch(Path file, CharSequence diskText) {
+        Path path = file.toAbsolutePath().normalize();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            known.put(path, new Stamp(attrs.lastModifiedTime().toMillis(), attrs.size(), hash(diskText)));
+
+            Path directory = path.getParent();
+            if (watchService != null && !directories.containsKey(directory)) {
+                directories.put(directory, directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // Whether text is what the editor last knew to be on disk
+    public boolean isKnown(Path file, CharSequence text) {
+        Stamp stamp = known.get(file.toAbsolutePath().normalize());
+        return stamp != null && stamp.hash() == hash(text);
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) { // Events were lost, check everything here
+                        for (Path file : known.keySet()) {
+                            if (file.getParent().equals(directory)) scheduleCheck(file);
+                        }
+                    } else {
+                        Path file = directory.resolve((Path) event.context());
+                        if (known.containsKey(file)) scheduleCheck(file);
+                    }
+                }
+                if (!key.reset()) directories.remove(directory); // Directory is gone
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void scheduleCheck(Path file) {
+        ScheduledFuture<?> previous = pendingChecks.put(file, checker.schedule(() -> check(file), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS));
+        if (previous != null) previous.cancel(false);
+    }
+
+    private void check(Path file) {
+        pendingChecks.remove(file);
+        Stamp stamp = known.get(file);
+        if (stamp == null) return;
+
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (modified == stamp.modified() && attrs.size() == stamp.size()) return; // Nothing read
+
+            FileContent content = fileIOService.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+            long hash = hash(content.text());
+            if (hash == stamp.hash()) { // Touched but the same text
+                known.put(file, new Stamp(modified, attrs.size(), hash));
+                return;
+            }
+            onChange.accept(file, content);
+        } catch (NoSuchFileException e) {
+            // Deleted or mid-replace, a create event follows if it comes back
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static long hash(CharSequence text) {
+        long hash = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            hash = hash * HASH_MULTIPLIER + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private record Stamp(long modified, long size, long hash) {
+    }
+}
@@ -0,0 +1,317 @@
+package org.explement.jde.service;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import org.explement.jde.metrics.HighlightEvent;
+import org.explement.jde.metrics.Metrics;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+public class HighlightingPipeline {
+
+    // Quiet period before edits are highlighted
+    private static final Duration QUIET_PERIOD = Duration.millis(100);
+    // Paragraphs styled above and below the viewport in viewport mode
+    private static final int VIEWPORT_MARGIN = 100;
+    // Set on a paragraph state whose spans are stale, styled once the paragraph is near the viewport
+    private static final int UNSTYLED = 1 << 16;
+    // Most paragraphs a job copies off the document, a job that has not converged by then is continued by the next one
+    private static final int SNAPSHOT_PARAGRAPHS = 2_000;
+
+    private final CodeArea codeArea;
+    private final SyntaxHighlighterService highlighterService;
+    // Only re-lex the edited paragraphs instead of the whole document
+    private final boolean incremental;
+    // Documents with more paragraphs only lex states off screen and style around the viewport
+    private final int viewportThreshold;
+
+    // Lexing runs here, never on the JavaFX thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "syntax-highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final PauseTransition quietPeriod = new PauseTransition(QUIET_PERIOD);
+    private Future<?> pendingJob;
+    // Called on the JavaFX thread once the latest edit is styled
+    private Runnable onStyled = () -> { };
+    // Adds styles on top of the syntax spans of a paragraph (e.g. problem underlines), on the JavaFX thread
+    private BiFunction<Integer, StyleSpans<Collection<String>>, StyleSpans<Collection<String>>> decorator = (paragraph, spans) -> spans;
+    // Brackets of each paragraph, collected while lexing (incremental mode only, null when not wanted)
+    private NestingIndex nestingIndex;
+
+    // Bumped on every edit, results of older versions are dropped
+    private long documentVersion = 0;
+
+    // Lexer state at the end of each paragraph (one entry per paragraph), maybe flagged UNSTYLED
+    private final List<Integer> paragraphStates = new ArrayList<>();
+    // Paragraphs edited since the last applied result (-1 when there are none)
+    private int dirtyStart = -1;
+    private int dirtyEnd = -1;
+
+    private boolean viewportStylePending;
+
+    public HighlightingPipeline(CodeArea codeArea, SyntaxHighlighterService highlighterService, boolean incremental, int viewportThreshold) {
+        this.codeArea = codeArea;
+        this.highlighterService = highlighterService;
+        this.incremental = incremental;
+        this.viewportThreshold = viewportThreshold;
+
+        quietPeriod.setOnFinished(event -> submit());
+        // Scrolled or resized, style what comes into view once the new layout is known
+        codeArea.viewportDirtyEvents().subscribe(ignored -> {
+            if (viewportStylePending) return;
+            viewportStylePending = true;
+            Platform.runLater(() -> {
+                viewportStylePending = false;
+                styleViewport();
+            });
+        });
+        restyleAll();
+    }
+
+    public void setOnStyled(Runnable onStyled) {
+        this.onStyled = onStyled;
+    }
+
+    public void setDecorator(BiFunction<Integer, StyleSpans<Collection<String>>, StyleSpans<Collection<String>>> decorator) {
+        this.decorator = decorator;
+    }
+
+    // Keeps nestingIndex in step with the document from now on, starting with a full pass
+    public void setNestingIndex(NestingIndex nestingIndex) {
+        this.nestingIndex = nestingIndex;
+        restyleAll();
+    }
+
+    // Records the edit and restarts the quiet period, called on the JavaFX thread
+    public void onTextChange(PlainTextChange change) {
+        documentVersion++;
+        cancelPendingJob();
+
+        if (incremental) {
+            updateParagraphStates(change);
+        }
+
+        quietPeriod.playFromStart();
+    }
+
+    // Drops all cached state and highlights the whole document again
+    public void restyleAll() {
+        documentVersion++;
+        cancelPendingJob();
+
+        int paragraphCount = codeArea.getParagraphs().size();
+        paragraphStates.clear();
+        paragraphStates.addAll(Collections.nCopies(paragraphCount, -1)); // -1 never matches a real state
+        if (nestingIndex != null) nestingIndex.reset(paragraphCount);
+        dirtyStart = 0;
+        dirtyEnd = paragraphCount - 1;
+
+        quietPeriod.playFromStart();
+    }
+
+    private void updateParagraphStates(PlainTextChange change) {
+        int firstParagraph = codeArea.offsetToPosition(change.getPosition(), TwoDimensional.Bias.Forward).getMajor();
+        int removedLines = countLines(change.getRemoved());
+        int insertedLines = countLines(change.getInserted());
+
+        if (firstParagraph + removedLines >= paragraphStates.size()) { // Out of sync, start over
+            restyleAll();
+            return;
+        }
+
+        // Edited paragraphs inherit the state that entered the first untouched paragraph,
+        // so the last of them converges as soon as its real state is the same
+        int followingState = stateOf(paragraphStates.get(firstParagraph + removedLines));
+        paragraphStates.subList(firstParagraph, firstParagraph + removedLines + 1).clear();
+        paragraphStates.addAll(firstParagraph, Collections.nCopies(insertedLines + 1, followingState));
+        if (nestingIndex != null) nestingIndex.replace(firstParagraph, removedLines + 1, insertedLines + 1);
+
+        if (paragraphStates.size() != codeArea.getParagraphs().size()) { // Out of sync, start over
+            restyleAll();
+            return;
+        }
+
+        // Grow the dirty range to cover this edit, shifting it if the edit was above it
+        int editEnd = firstParagraph + insertedLines;
+        if (dirtyStart < 0) {
+            dirtyStart = firstParagraph;
+            dirtyEnd = editEnd;
+        } else {
+            if (dirtyEnd > firstParagraph + removedLines) dirtyEnd += insertedLines - removedLines;
+            dirtyStart = Math.min(dirtyStart, firstParagraph);
+            dirtyEnd = Math.max(dirtyEnd, editEnd);
+        }
+    }
+
+    // Snapshots the document on the JavaFX thread and hands the lexing to the executor
+    private void submit() {
+        long version = documentVersion;
+
+        if (!incremental) {
+            String text = codeArea.getText();
+            pendingJob = executor.submit(() -> {
+                StyleSpans<Collection<String>> spans = highlighterService.computeHighlighting(text);
+                Platform.runLater(() -> {
+                    if (version != documentVersion) return;
+                    codeArea.setStyleSpans(0, spans);
+                    onStyled.run();
+                });
+            });
+            return;
+        }
+
+        if (dirtyStart < 0) return;
+
+        int firstParagraph = dirtyStart;
+        int lastEdited = dirtyEnd;
+        int entryState = firstParagraph == 0 ? SyntaxHighlighterService.STATE_DEFAULT : stateOf(paragraphStates.get(firstParagraph - 1));
+        // Big documents only get their states here, spans are built for the viewport afterwards
+        boolean viewportOnly = paragraphStates.size() > viewportThreshold;
+        // Only a window from the first dirty paragraph is copied, so an edit near the top of a long document stays cheap
+        int lastParagraph = Math.min(paragraphStates.size(), firstParagraph + SNAPSHOT_PARAGRAPHS) - 1;
+        boolean lastInDocument = lastParagraph == paragraphStates.size() - 1;
+        List<Integer> cachedStates = new ArrayList<>(paragraphStates.subList(firstParagraph, lastParagraph + 1));
+        int startOffset = codeArea.getAbsolutePosition(firstParagraph, 0);
+        String text = codeArea.getText(startOffset, codeArea.getAbsolutePosition(lastParagraph, codeArea.getParagraphLength(lastParagraph)));
+        NestingIndex.Collector brackets = nestingIndex == null ? null : new NestingIndex.Collector();
+
+        pendingJob = executor.submit(() -> {
+            HighlightEvent event = new HighlightEvent();
+            event.begin();
+            long start = System.nanoTime();
+
+            List<StyleSpans<Collection<String>>> spans = new ArrayList<>();
+            List<Integer> states = new ArrayList<>();
+
+            int state = entryState;
+            int lineStart = 0;
+            boolean converged = false;
+            for (int i = 0; i < cachedStates.size(); i++) {
+                if (Thread.currentThread().isInterrupted()) return; // A newer edit arrived
+
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd < 0) lineEnd = text.length();
+
+                if (brackets != null) brackets.startParagraph(text, lineStart);
+                if (viewportOnly) {
+                    state = brackets == null ? highlighterService.scanState(text, lineStart, lineEnd, state)
+                            : highlighterService.scanTokens(text, lineStart, lineEnd, state, brackets);
+                } else {
+                    StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+                    state = brackets == null ? highlighterService.computeHighlighting(text, lineStart, lineEnd, state, spansBuilder)
+                            : highlighterService.computeHighlighting(text, lineStart, lineEnd, state, spansBuilder, brackets);
+                    spans.add(spansBuilder.create());
+                }
+                if (brackets != null) brackets.endParagraph();
+                states.add(state);
+                lineStart = lineEnd + 1;
+
+                if (firstParagraph + i >= lastEdited && stateOf(cachedStates.get(i)) == state) { // Rest of the document is unaffected
+                    converged = true;
+                    break;
+                }
+            }
+            boolean unfinished = !converged && !lastInDocument; // Went through the whole window, the next job goes on
+
+            Metrics.record(Metrics.HIGHLIGHT_LEX, start);
+            event.phase = "lex";
+            event.paragraphs = states.size();
+            event.characters = Math.min(lineStart, text.length());
+            event.commit();
+
+            Platform.runLater(() -> apply(version, firstParagraph, spans, states, brackets, unfinished ? lastEdited : -1));
+        });
+    }
+
+    // Applies a finished job, unless the document changed while it was running
+    // lastEdited is -1 when the job converged, else the rest is lexed by a follow-up job right away
+    private void apply(long version, int firstParagraph, List<StyleSpans<Collection<String>>> spans, List<Integer> states,
+                       NestingIndex.Collector brackets, int lastEdited) {
+        if (version != documentVersion) return;
+
+        HighlightEvent event = new HighlightEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < states.size(); i++) {
+            if (spans.isEmpty()) { // Viewport mode, the spans of these paragraphs are stale now
+                paragraphStates.set(firstParagraph + i, states.get(i) | UNSTYLED);
+            } else {
+                codeArea.setStyleSpans(firstParagraph + i, 0, decorator.apply(firstParagraph + i, spans.get(i)));
+                paragraphStates.set(firstParagraph + i, states.get(i));
+            }
+            if (brackets != null) nestingIndex.set(firstParagraph + i, brackets.getBrackets().get(i));
+        }
+        if (lastEdited < 0) {
+            dirtyStart = -1;
+            dirtyEnd = -1;
+        } else {
+            dirtyStart = firstParagraph + states.size();
+            dirtyEnd = Math.max(lastEdited, dirtyStart);
+        }
+        styleViewport();
+
+        Metrics.record(Metrics.HIGHLIGHT_APPLY, start);
+        event.phase = "apply";
+        event.paragraphs = states.size();
+        event.commit();
+        onStyled.run();
+        if (lastEdited >= 0) submit();
+    }
+
+    // Styles the stale paragraphs on screen and within the margin around it, on the JavaFX thread
+    // Each starts from the cached state of the paragraph above, so comments and strings opened off screen come out right
+    private void styleViewport() {
+        int visibleCount = codeArea.getVisibleParagraphs().size();
+        if (!incremental || visibleCount == 0) return;
+
+        int first = Math.max(0, codeArea.visibleParToAllParIndex(0) - VIEWPORT_MARGIN);
+        int last = Math.min(paragraphStates.size() - 1, codeArea.visibleParToAllParIndex(visibleCount - 1) + VIEWPORT_MARGIN);
+        if (dirtyStart >= 0) last = Math.min(last, dirtyStart - 1); // States from the edit on are not known yet
+
+        for (int paragraph = first; paragraph <= last; paragraph++) {
+            int cached = paragraphStates.get(paragraph);
+            if (cached < 0 || (cached & UNSTYLED) == 0) continue;
+
+            int state = paragraph == 0 ? SyntaxHighlighterService.STATE_DEFAULT : stateOf(paragraphStates.get(paragraph - 1));
+            StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+            highlighterService.computeParagraphHighlighting(codeArea.getText(paragraph), state, spansBuilder);
+            codeArea.setStyleSpans(paragraph, 0, decorator.apply(paragraph, spansBuilder.create()));
+            paragraphStates.set(paragraph, cached & ~UNSTYLED);
+        }
+    }
+
+    private static int stateOf(int cached) { // Lexer state without the UNSTYLED flag, -1 stays unknown
+        return cached < 0 ? cached : cached & ~UNSTYLED;
+    }
+
+    private void cancelPendingJob() {
+        if (pendingJob != null) {
+            pendingJob.cancel(true);
+            pendingJob = null;
+        }
+    }
+
+    private static int countLines(String text) { // Number of line breaks in the text
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,78 @@
+package org.explement.jde.service;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps compiler output in memory, everything else goes to the shared standard file manager
+class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    private final Map<String, ClassBytes> outputs = new LinkedHashMap<>();
+    // Binary class names mapped to the source they were compiled from, when the compiler says
+    private final Map<String, URI> origins = new HashMap<>();
+
+    InMemoryFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+        ClassBytes classBytes = new ClassBytes(className, kind);
+        outputs.put(className, classBytes);
+        if (sibling != null) origins.put(className, sibling.toUri());
+        return classBytes;
+    }
+
+    @Override
+    public void close() {
+        // The standard file manager is shared between compilations, never close it from here
+    }
+
+    // Binary class names mapped to their class file bytes
+    Map<String, byte[]> getClassBytes() {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        outputs.forEach((name, classBytes) -> classes.put(name, classBytes.bytes.toByteArray()));
+        return classes;
+    }
+
+    // Source the class was compiled from, or null if unknown
+    URI getOrigin(String className) {
+        return origins.get(className);
+    }
+
+    // Source code held in a string (e.g. straight from the CodeArea)
+    static class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static class ClassBytes extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassBytes(String className, Kind kind) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+}
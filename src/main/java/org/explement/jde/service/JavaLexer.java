@@ -0,0 +1,279 @@
+package org.explement.jde.service;
+
+import java.util.Collection;
+import java.util.Collections;
+
+public class JavaLexer {
+
+    // Lexer states carried over from one paragraph into the next
+    public static final int STATE_DEFAULT = 0;
+    public static final int STATE_BLOCK_COMMENT = 1;
+    public static final int STATE_TEXT_BLOCK = 2;
+
+    // Token kinds and the style class they are highlighted with (null for unstyled tokens)
+    public enum Token {
+        KEYWORD("keyword"),
+        TYPE("type"),
+        IDENTIFIER(null),
+        ANNOTATION("annotation"),
+        STRING("string"),
+        CHAR("string"),
+        TEXT_BLOCK("string"),
+        COMMENT("comment"),
+        NUMBER("integer"),
+        PAREN("paren"),
+        BRACE("brace"),
+        BRACKET("bracket"),
+        SEMICOLON("semicolon"),
+        OPERATOR(null);
+
+        private final Collection<String> styles; // Shared, so tokens never allocate
+
+        Token(String styleClass) {
+            this.styles = styleClass == null ? Collections.emptyList() : Collections.singleton(styleClass);
+        }
+
+        public Collection<String> getStyles() {
+            return styles;
+        }
+
+        public boolean isStyled() {
+            return !styles.isEmpty();
+        }
+    }
+
+    // Receives every token in order, offsets are absolute within the scanned text
+    public interface TokenSink {
+        void token(Token token, int start, int end);
+    }
+
+    // Perfect hash table of reserved words, see findHashMultiplier()
+    private static final int TABLE_SIZE = 256;
+    private final String[] words = new String[TABLE_SIZE];
+    private final Token[] wordTokens = new Token[TABLE_SIZE];
+    private final int hashMultiplier;
+
+    public JavaLexer(String[] keywords, String[] types) {
+        String[] all = new String[keywords.length + types.length];
+        System.arraycopy(keywords, 0, all, 0, keywords.length);
+        System.arraycopy(types, 0, all, keywords.length, types.length);
+
+        hashMultiplier = findHashMultiplier(all);
+        for (int i = 0; i < all.length; i++) {
+            int slot = hash(all[i], 0, all[i].length(), hashMultiplier);
+            words[slot] = all[i];
+            wordTokens[slot] = i < keywords.length ? Token.KEYWORD : Token.TYPE;
+        }
+    }
+
+    // Scans text[start, end) starting in the given state, returns the state at end
+    public int lex(String text, int start, int end, int state, TokenSink sink) {
+        int i = start;
+
+        if (state == STATE_BLOCK_COMMENT) {
+            int close = findBlockCommentEnd(text, i, end);
+            sink.token(Token.COMMENT, i, close < 0 ? end : close);
+            if (close < 0) return STATE_BLOCK_COMMENT;
+            i = close;
+        } else if (state == STATE_TEXT_BLOCK) {
+            int close = findTextBlockEnd(text, i, end);
+            sink.token(Token.TEXT_BLOCK, i, close < 0 ? end : close);
+            if (close < 0) return STATE_TEXT_BLOCK;
+            i = close;
+        }
+
+        while (i < end) {
+            char c = text.charAt(i);
+
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') { // Whitespace
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) { // Keyword, type or identifier
+                int wordEnd = skipIdentifier(text, i + 1, end);
+                sink.token(lookupWord(text, i, wordEnd), i, wordEnd);
+                i = wordEnd;
+            } else if (c >= '0' && c <= '9' || c == '.' && i + 1 < end && isDigit(text.charAt(i + 1))) { // Number
+                int numberEnd = skipNumber(text, i, end);
+                sink.token(Token.NUMBER, i, numberEnd);
+                i = numberEnd;
+            } else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/') { // Line comment
+                int lineEnd = findLineEnd(text, i, end);
+                sink.token(Token.COMMENT, i, lineEnd);
+                i = lineEnd;
+            } else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') { // Block comment
+                int close = findBlockCommentEnd(text, i + 2, end);
+                sink.token(Token.COMMENT, i, close < 0 ? end : close);
+                if (close < 0) return STATE_BLOCK_COMMENT;
+                i = close;
+            } else if (c == '"' && i + 2 < end && text.charAt(i + 1) == '"' && text.charAt(i + 2) == '"') { // Text block
+                int close = findTextBlockEnd(text, i + 3, end);
+                sink.token(Token.TEXT_BLOCK, i, close < 0 ? end : close);
+                if (close < 0) return STATE_TEXT_BLOCK;
+                i = close;
+            } else if (c == '"' || c == '\'') { // String or char literal, never spans lines
+                int literalEnd = findQuoteEnd(text, i + 1, end, c);
+                sink.token(c == '"' ? Token.STRING : Token.CHAR, i, literalEnd);
+                i = literalEnd;
+            } else if (c == '@' && i + 1 < end && Character.isJavaIdentifierStart(text.charAt(i + 1))) { // Annotation
+                int wordEnd = skipIdentifier(text, i + 2, end);
+                boolean isInterface = wordEnd - i - 1 == 9 && text.startsWith("interface", i + 1); // @interface
+                sink.token(isInterface ? Token.KEYWORD : Token.ANNOTATION, i, wordEnd);
+                i = wordEnd;
+            } else {
+                sink.token(symbolToken(c), i, i + 1);
+                i++;
+            }
+        }
+
+        return STATE_DEFAULT;
+    }
+
+    private static Token symbolToken(char c) {
+        return switch (c) {
+            case '(', ')' -> Token.PAREN;
+            case '{', '}' -> Token.BRACE;
+            case '[', ']' -> Token.BRACKET;
+            case ';' -> Token.SEMICOLON;
+            default -> Token.OPERATOR;
+        };
+    }
+
+    private Token lookupWord(String text, int start, int end) {
+        int slot = hash(text, start, end, hashMultiplier);
+        String word = words[slot];
+        if (word != null && word.length() == end - start && text.regionMatches(start, word, 0, word.length())) {
+            return wordTokens[slot];
+        }
+        return Token.IDENTIFIER;
+    }
+
+    private static int hash(String text, int start, int end, int multiplier) { // Only looks at length and the first two and last chars
+        int length = end - start;
+        int second = length > 1 ? text.charAt(start + 1) : 0;
+        int h = text.charAt(start) * multiplier + second * 31 + text.charAt(end - 1) * 7 + length;
+        return (h ^ (h >>> 8)) & (TABLE_SIZE - 1);
+    }
+
+    // Searches for a multiplier that gives every word its own slot
+    private static int findHashMultiplier(String[] words) {
+        for (int multiplier = 1; multiplier < 1 << 16; multiplier++) {
+            boolean[] used = new boolean[TABLE_SIZE];
+            boolean perfect = true;
+            for (String word : words) {
+                int slot = hash(word, 0, word.length(), multiplier);
+                if (used[slot]) {
+                    perfect = false;
+                    break;
+                }
+                used[slot] = true;
+            }
+            if (perfect) return multiplier;
+        }
+        throw new IllegalStateException("No perfect hash for reserved words");
+    }
+
+    private static int skipIdentifier(String text, int i, int end) {
+        while (i < end && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+        return i;
+    }
+
+    // Decimal, hex, octal and binary literals with underscores, fractions, exponents and suffixes
+    private static int skipNumber(String text, int i, int end) {
+        boolean hex = false;
+        if (text.charAt(i) == '0' && i + 1 < end) {
+            char prefix = text.charAt(i + 1);
+            if (prefix == 'x' || prefix == 'X') {
+                hex = true;
+                i += 2;
+            } else if (prefix == 'b' || prefix == 'B') {
+                i += 2;
+            }
+        }
+
+        boolean fraction = false; // A second '.' or one after the exponent starts a new token, as in 1..2
+        while (i < end) {
+            char c = text.charAt(i);
+            if (isDigit(c) || c == '_' || hex && isHexDigit(c)) {
+                i++;
+            } else if (c == '.' && !fraction) { // Fraction, but not a member access like 1.toString
+                if (i + 1 < end && Character.isJavaIdentifierStart(text.charAt(i + 1)) && !isFractionEnd(text, i + 1, end, hex)) break;
+                fraction = true;
+                i++;
+            } else if (!hex && (c == 'e' || c == 'E') || hex && (c == 'p' || c == 'P')) { // Exponent
+                fraction = true;
+                i++;
+                if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+            } else {
+                break;
+            }
+        }
+
+        if (i < end) { // Type suffix
+            char c = text.charAt(i);
+            if (c == 'l' || c == 'L' || c == 'f' || c == 'F' || c == 'd' || c == 'D') i++;
+        }
+        return i;
+    }
+
+    // True if text at i, right after a '.', is an exponent or a type suffix that ends the literal, as in 3.f or 1.e5
+    private static boolean isFractionEnd(String text, int i, int end, boolean hex) {
+        char c = text.charAt(i);
+        if (!hex && (c == 'e' || c == 'E') || hex && (c == 'p' || c == 'P')) {
+            int next = i + 1 < end && (text.charAt(i + 1) == '+' || text.charAt(i + 1) == '-') ? i + 2 : i + 1;
+            return next < end && isDigit(text.charAt(next));
+        }
+        boolean suffix = c == 'f' || c == 'F' || c == 'd' || c == 'D';
+        return suffix && (i + 1 >= end || !Character.isJavaIdentifierPart(text.charAt(i + 1)));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private static int findLineEnd(String text, int i, int end) {
+        while (i < end && text.charAt(i) != '\n') i++;
+        return i;
+    }
+
+    // Returns the offset just past "*/", or -1 if the comment does not end before end
+    private static int findBlockCommentEnd(String text, int i, int end) {
+        for (; i + 1 < end; i++) {
+            if (text.charAt(i) == '*' && text.charAt(i + 1) == '/') return i + 2;
+        }
+        return -1;
+    }
+
+    // Returns the offset just past the closing quotes, or -1 if the text block does not end before end
+    private static int findTextBlockEnd(String text, int i, int end) {
+        while (i + 2 < end) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2; // Skip escaped char
+            } else if (c == '"' && text.charAt(i + 1) == '"' && text.charAt(i + 2) == '"') {
+                return i + 3;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the offset just past the closing quote, or the end of the line for unterminated literals
+    private static int findQuoteEnd(String text, int i, int end, char quote) {
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '\n') return i;
+            if (c == '\\') {
+                if (i + 1 < end && text.charAt(i + 1) == '\n') return i + 1;
+                i += 2; // Skip escaped char
+                continue;
+            }
+            i++;
+            if (c == quote) return i;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,324 @@
+package org.explement.jde.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Append-only journal of unsaved edits per tab, replayed on startup after a crash
+// Edits are buffered in memory and appended in batches, journals are compacted into a snapshot as they grow
+// Each journal has a .lock file held while an editor writes it, so a second editor never recovers or deletes it
+public class JournalService {
+
+    private static final int MAGIC = 0x4A444A31; // "JDJ1"
+    private static final byte RECORD_SNAPSHOT = 1; // int length, UTF-8 text
+    private static final byte RECORD_EDIT = 2; // int position, int removed length, int length, UTF-8 inserted text
+    private static final byte RECORD_PATH = 3; // UTF path of the tab
+
+    private static final long FLUSH_MILLIS = 500;
+    // Compact once the edits outweigh the snapshot by this much
+    private static final long COMPACT_SLACK = 64 * 1024;
+
+    private final Path directory;
+    // Journals of tabs with unsaved edits, by tab path
+    private final Map<String, Journal> journals = new ConcurrentHashMap<>();
+    // Locks of recovered journals until they are adopted, by journal file
+    private final Map<Path, FileLock> recoveredLocks = new ConcurrentHashMap<>();
+    // Every file operation runs here, in order
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JournalService(Path directory) {
+        this.directory = directory;
+        executor.scheduleWithFixedDelay(this::flushAll, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Records one edit of a dirty tab, text is only read when the tab's journal starts
+    public void record(String path, int position, int removedLength, String inserted, Supplier<String> text) {
+        Journal journal = journals.get(path);
+        if (journal == null) { // First unsaved edit, start from the whole text after it
+            journal = new Journal(directory.resolve(UUID.randomUUID() + ".journal"));
+            journal.append(out -> {
+                out.writeInt(MAGIC);
+                writePath(out, path);
+                writeSnapshot(out, text.get());
+            });
+            journal.snapshotBytes = journal.pending.size();
+            journals.put(path, journal);
+            return;
+        }
+
+        journal.append(out -> {
+            byte[] bytes = inserted.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(RECORD_EDIT);
+            out.writeInt(position);
+            out.writeInt(removedLength);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        });
+    }
+
+    // The tab was saved under a new path
+    public void rename(String oldPath, String newPath) {
+        Journal journal = journals.remove(oldPath);
+        if (journal == null) return;
+        journal.append(out -> writePath(out, newPath));
+        journals.put(newPath, journal);
+    }
+
+    // The tab has no unsaved edits anymore
+    public void discard(String path) {
+        Journal journal = journals.remove(path);
+        if (journal == null) return;
+        journal.discarded = true;
+        executor.execute(() -> delete(journal.file, journal.lock)); // After any flush already running
+    }
+
+    // Blocks until everything recorded so far is on disk
+    public void flush() {
+        try {
+            executor.submit(this::flushAll).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // Replays every journal left by a previous session, each must then be adopted or discarded
+    public List<RecoveredTab> recover() {
+        List<RecoveredTab> recovered = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return recovered;
+
+        try (var files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".journal")).toList()) {
+                FileLock lock = lock(file);
+                if (lock == null) continue; // Another editor is still writing it
+
+                RecoveredTab tab = replay(file);
+                if (tab == null) {
+                    delete(file, lock);
+                } else {
+                    recoveredLocks.put(file, lock);
+                    recovered.add(tab);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return recovered;
+    }
+
+    // Keeps journaling a recovered tab, now open under path
+    public void adopt(RecoveredTab tab, String path) {
+        Journal journal = new Journal(tab.file());
+        journal.lock = recoveredLocks.remove(tab.file());
+        journals.put(path, journal);
+        executor.execute(() -> { // Drops a torn tail, so new records are not appended after it
+            try {
+                rewrite(journal, new RecoveredTab(path, tab.text(), tab.file()));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        });
+    }
+
+    private void flushAll() {
+        for (Journal journal : journals.values()) {
+            byte[] bytes;
+            synchronized (journal) {
+                if (journal.discarded || journal.pending.size() == 0) continue;
+                bytes = journal.pending.toByteArray();
+                journal.pending.reset();
+            }
+
+            try {
+                Files.createDirectories(directory);
+                if (journal.lock == null) journal.lock = lock(journal.file);
+                try (FileChannel channel = FileChannel.open(journal.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                journal.fileBytes += bytes.length;
+                if (journal.fileBytes > 2 * journal.snapshotBytes + COMPACT_SLACK) compact(journal);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    // Rewrites the journal as one snapshot of the text it describes
+    private void compact(Journal journal) throws IOException {
+        RecoveredTab tab = replay(journal.file);
+        if (tab != null) rewrite(journal, tab);
+    }
+
+    private void rewrite(Journal journal, RecoveredTab tab) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        writePath(out, tab.path());
+        writeSnapshot(out, tab.text());
+
+        Path temp = Files.createTempFile(directory, "compact", ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, journal.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal.fileBytes = bytes.size();
+        journal.snapshotBytes = bytes.size();
+    }
+
+    // Path and text the journal describes, up to the last complete record, or null if unreadable
+    private static RecoveredTab replay(Path file) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC) return null;
+
+            String path = null;
+            StringBuilder text = new StringBuilder();
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == RECORD_PATH) {
+                        path = in.readUTF();
+                    } else if (type == RECORD_SNAPSHOT) {
+                        text = new StringBuilder(readText(in));
+                    } else if (type == RECORD_EDIT) {
+                        int position = in.readInt();
+                        int removedLength = in.readInt();
+                        String inserted = readText(in);
+                        if (position < 0 || removedLength < 0 || position + removedLength > text.length()) break;
+                        text.replace(position, position + removedLength, inserted);
+                    } else {
+                        break; // Unknown record, keep what was read so far
+                    }
+                }
+            } catch (EOFException e) {
+                // Torn last record from a crash mid-write
+            }
+            return path == null ? null : new RecoveredTab(path, text.toString(), file);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) throw new EOFException(); // Torn record
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writePath(DataOutputStream out, String path) throws IOException {
+        out.writeByte(RECORD_PATH);
+        out.writeUTF(path);
+    }
+
+    private static void writeSnapshot(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(RECORD_SNAPSHOT);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Lock on the journal's .lock file, null if another editor holds it
+    // A separate file, since compaction replaces the journal file itself
+    private static FileLock lock(Path journalFile) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile(journalFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) return lock;
+        } catch (IOException | OverlappingFileLockException e) {
+            // Held by this editor already, or not lockable, leave it alone
+        }
+        close(channel);
+        return null;
+    }
+
+    private static Path lockFile(Path journalFile) {
+        String name = journalFile.getFileName().toString();
+        return journalFile.resolveSibling(name.substring(0, name.length() - ".journal".length()) + ".lock");
+    }
+
+    // Deletes the journal, then releases and deletes its lock file
+    private static void delete(Path file, FileLock lock) {
+        try {
+            Files.deleteIfExists(file);
+            if (lock != null) {
+                close(lock.channel());
+                Files.deleteIfExists(lockFile(file));
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close(); // Releases its lock
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public record RecoveredTab(String path, String text, Path file) {
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class Journal {
+        private final Path file;
+        // Records not yet on disk, guarded by the journal
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private final DataOutputStream pendingOut = new DataOutputStream(pending);
+        private volatile boolean discarded;
+        // Held while this editor owns the journal, taken on the first flush or kept from recovery
+        private volatile FileLock lock;
+        // Only touched on the journal thread
+        private long fileBytes;
+        private long snapshotBytes;
+
+        Journal(Path file) {
+            this.file = file;
+        }
+
+        synchronized void append(RecordWriter writer) {
+            try {
+                writer.write(pendingOut);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // In-memory streams do not fail
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.explement.jde.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Read-only view of a file too big for the editor, lines are decoded only when asked for
+// The file is memory mapped and its line starts are indexed on a background thread
+public class MappedTextFile implements AutoCloseable {
+
+    // A mapping covers at most 2 GB, bigger files are mapped in segments
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Longer lines are cut, a single label cannot lay out megabytes of text
+    private static final int MAX_LINE_BYTES = 16 * 1024;
+
+    private final Path path;
+    private final long size;
+    private final ByteBuffer[] segments;
+    private final int bomLength;
+
+    // Byte offset where each line starts, filled in by the indexer
+    // lineCount is published after lineStarts, so a reader sees every start below it
+    private volatile long[] lineStarts = new long[1024];
+    private volatile int lineCount = 1;
+    private volatile boolean indexed;
+    private volatile boolean closed;
+
+    private MappedTextFile(Path path, long size, ByteBuffer[] segments) {
+        this.path = path;
+        this.size = size;
+        this.segments = segments;
+        this.bomLength = size >= 3 && byteAt(0) == (byte) 0xEF && byteAt(1) == (byte) 0xBB && byteAt(2) == (byte) 0xBF ? 3 : 0;
+        lineStarts[0] = bomLength;
+    }
+
+    public static MappedTextFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset));
+            }
+            return new MappedTextFile(path, size, segments); // Mappings stay valid after the channel closes
+        }
+    }
+
+    // Indexes the line starts on a daemon thread, onProgress is called from it now and then
+    public void startIndexing(Runnable onProgress) {
+        Thread indexer = new Thread(() -> index(onProgress), "large-file-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    // Lines whose end is known, all of them once indexing is done
+    public int lineCount() {
+        return indexed ? lineCount : lineCount - 1;
+    }
+
+    // Text of a line without its line break, UTF-8, cut after MAX_LINE_BYTES
+    public String line(int index) {
+        int count = lineCount; // Before lineStarts, see above
+        long[] starts = lineStarts;
+        long start = starts[index];
+        long end = index + 1 < count ? starts[index + 1] : size;
+
+        if (end > start && byteAt(end - 1) == '\n') end--;
+        if (end > start && byteAt(end - 1) == '\r') end--;
+
+        boolean cut = end - start > MAX_LINE_BYTES;
+        byte[] bytes = new byte[(int) Math.min(end - start, MAX_LINE_BYTES)];
+        read(start, bytes, bytes.length);
+        String text = new String(bytes, StandardCharsets.UTF_8); // Malformed bytes become replacement chars
+        return cut ? text + " ..." : text;
+    }
+
+    // Line holding the byte at offset, or -1 if indexing has not reached it yet
+    public int lineOf(long offset) {
+        int count = lineCount;
+        long[] starts = lineStarts;
+        if (!indexed && offset >= starts[count - 1]) return -1;
+
+        int found = Arrays.binarySearch(starts, 0, count, offset);
+        return found >= 0 ? found : -found - 2; // Insertion point minus one is the line containing it
+    }
+
+    // Byte offset of the next match of needle at or after from, or -1
+    // Stops early, returning -1, when the calling thread is interrupted
+    public long find(byte[] needle, long from) {
+        if (needle.length == 0) return -1;
+
+        byte[] chunk = new byte[CHUNK_SIZE + needle.length - 1]; // Overlap so matches across chunks are found
+        for (long chunkStart = from; chunkStart + needle.length <= size; chunkStart += CHUNK_SIZE) {
+            if (closed || Thread.currentThread().isInterrupted()) return -1;
+
+            int length = (int) Math.min(chunk.length, size - chunkStart);
+            read(chunkStart, chunk, length);
+            int last = Math.min(CHUNK_SIZE, length - needle.length + 1);
+            for (int i = 0; i < last; i++) {
+                if (chunk[i] != needle[0]) continue;
+                int j = 1;
+                while (j < needle.length && chunk[i + j] == needle[j]) j++;
+                if (j == needle.length) return chunkStart + i;
+            }
+        }
+        return -1;
+    }
+
+    // Stops indexing, the mappings are released once unreachable
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void index(Runnable onProgress) {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long[] starts = lineStarts;
+        int count = lineCount;
+        int chunksSinceProgress = 0;
+
+        for (long chunkStart = bomLength; chunkStart < size; chunkStart += CHUNK_SIZE) {
+            if (closed) return;
+
+            int length = (int) Math.min(CHUNK_SIZE, size - chunkStart);
+            read(chunkStart, chunk, length);
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] != '\n') continue;
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                    lineStarts = starts;
+                }
+                starts[count++] = chunkStart + i + 1;
+            }
+            lineCount = count;
+
+            if (++chunksSinceProgress == 256) { // Every 16 MB
+                chunksSinceProgress = 0;
+                onProgress.run();
+            }
+        }
+        indexed = true;
+        onProgress.run();
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    // Copies length bytes from position, across segment boundaries
+    private void read(long position, byte[] destination, int length) {
+        int copied = 0;
+        while (copied < length) {
+            ByteBuffer segment = segments[(int) ((position + copied) >>> SEGMENT_SHIFT)];
+            int offset = (int) ((position + copied) & (SEGMENT_SIZE - 1));
+            int count = Math.min(length - copied, segment.limit() - offset);
+            segment.get(offset, destination, copied, count);
+            copied += count;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.explement.jde.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Brackets of every paragraph, filled in by the highlighting pipeline as it lexes, so those in comments and strings never count
+// A segment tree over the paragraphs keeps the depth changes, finding a partner is a walk down it plus a scan of two paragraphs
+// Typing inside a line updates one leaf, only adding or removing lines rebuilds the tree, lazily on the next lookup
+public class NestingIndex {
+
+    // A bracket is its column << 3 | kind, opening kinds are even
+    private static final int PAREN = 0;
+    private static final int BRACKET = 2;
+    private static final int BRACE = 4;
+    private static final int[] NONE = new int[0];
+    // Depth minimum of a paragraph without brackets, far from overflowing when added to
+    private static final int NO_MINIMUM = Integer.MAX_VALUE / 2;
+
+    // Brackets of each paragraph by column, null until the paragraph is lexed after an edit
+    private final List<int[]> paragraphs = new ArrayList<>();
+    private int unknown;
+
+    // Per node: net depth change, and the lowest depth after / before any bracket, relative to the depth where the node starts
+    private int[] sum = new int[0];
+    private int[] minAfter = new int[0];
+    private int[] minBefore = new int[0];
+    private int leaves;
+    private boolean rebuild = true;
+    private final List<Integer> changedLeaves = new ArrayList<>();
+
+    // A bracket and its partner, sameKind is false for a '(' closed by ']' and the like
+    public record Match(int paragraph, int column, int partnerParagraph, int partnerColumn, boolean sameKind) {
+    }
+
+    // Forgets all brackets, for a document that is lexed from scratch
+    public void reset(int paragraphCount) {
+        paragraphs.clear();
+        paragraphs.addAll(Collections.nCopies(paragraphCount, null));
+        unknown = paragraphCount;
+        rebuild = true;
+    }
+
+    // Replaces removed paragraphs from first on by inserted ones, not known until lexed
+    public void replace(int first, int removed, int inserted) {
+        List<int[]> replaced = paragraphs.subList(first, first + removed);
+        for (int[] brackets : replaced) {
+            if (brackets == null) unknown--;
+        }
+        replaced.clear();
+        paragraphs.addAll(first, Collections.nCopies(inserted, null));
+        unknown += inserted;
+
+        if (removed != inserted) rebuild = true;
+        else for (int i = 0; i < inserted; i++) changedLeaves.add(first + i);
+    }
+
+    // Records the brackets lexed in a paragraph, as returned by a Collector
+    public void set(int paragraph, int[] brackets) {
+        if (paragraphs.get(paragraph) == null) unknown--;
+        paragraphs.set(paragraph, brackets);
+        changedLeaves.add(paragraph);
+    }
+
+    // True once every paragraph is lexed since the last edit
+    public boolean isComplete() {
+        return unknown == 0;
+    }
+
+    public int getParagraphCount() {
+        return paragraphs.size();
+    }
+
+    // The bracket at a position and its partner, null if there is no bracket there or it has no partner
+    public Match match(int paragraph, int column) {
+        if (!isComplete() || paragraph >= paragraphs.size()) return null;
+        int[] brackets = paragraphs.get(paragraph);
+        int index = indexOf(brackets, column);
+        if (index < 0) return null;
+        updateTree();
+
+        int depth = depthBefore(paragraph);
+        for (int i = 0; i < index; i++) {
+            depth += delta(brackets[i]);
+        }
+        long partner = isOpening(brackets[index]) ? findClosing(paragraph, index + 1, depth) : findOpening(paragraph, index - 1, depth - 1);
+        if (partner < 0) return null;
+
+        int partnerParagraph = (int) (partner >>> 32);
+        int partnerBracket = paragraphs.get(partnerParagraph)[(int) partner];
+        return new Match(paragraph, column, partnerParagraph, partnerBracket >>> 3, (partnerBracket & ~1 & 7) == (brackets[index] & ~1 & 7));
+    }
+
+    // Last paragraph of the {} block opened on paragraph and closed on a later one, -1 if none
+    // The first '{' left open at the end of the line counts, so "} else {" folds the else block
+    public int foldEnd(int paragraph) {
+        if (!isComplete() || paragraph >= paragraphs.size()) return -1;
+        int[] brackets = paragraphs.get(paragraph);
+        int open = -1;
+        int depth = 0;
+        int lowest = 0;
+        for (int i = 0; i < brackets.length; i++) {
+            depth += delta(brackets[i]);
+            if (depth <= lowest) { // Everything opened so far is closed again
+                lowest = depth;
+                open = -1;
+            } else if (open < 0 && (brackets[i] & 7) == BRACE) {
+                open = i;
+            }
+        }
+        if (open < 0) return -1;
+
+        Match match = match(paragraph, brackets[open] >>> 3);
+        return match == null || !match.sameKind() || match.partnerParagraph() <= paragraph ? -1 : match.partnerParagraph();
+    }
+
+    // Collects the brackets of the paragraphs of one lexing pass, fed every token of the pass
+    public static class Collector implements JavaLexer.TokenSink {
+        private final List<int[]> brackets = new ArrayList<>();
+        private int[] current = new int[8];
+        private int size;
+        private String text;
+        private int lineStart;
+
+        // Starts a paragraph of text beginning at lineStart
+        public void startParagraph(String text, int lineStart) {
+            this.text = text;
+            this.lineStart = lineStart;
+            size = 0;
+        }
+
+        public void endParagraph() {
+            brackets.add(size == 0 ? NONE : Arrays.copyOf(current, size));
+        }
+
+        public List<int[]> getBrackets() {
+            return brackets;
+        }
+
+        @Override
+        public void token(JavaLexer.Token token, int start, int end) {
+            int kind = switch (token) {
+                case PAREN -> PAREN;
+                case BRACKET -> BRACKET;
+                case BRACE -> BRACE;
+                default -> -1;
+            };
+            if (kind < 0) return;
+
+            char c = text.charAt(start);
+            boolean closing = c == ')' || c == ']' || c == '}';
+            if (size == current.length) current = Arrays.copyOf(current, size * 2);
+            current[size++] = (start - lineStart) << 3 | kind | (closing ? 1 : 0);
+        }
+    }
+
+    // First bracket from paragraph/index on that brings the depth back down to depth, as paragraph << 32 | index
+    private long findClosing(int paragraph, int index, int depth) {
+        int[] brackets = paragraphs.get(paragraph);
+        int current = depth + 1;
+        for (int i = index; i < brackets.length; i++) {
+            current += delta(brackets[i]);
+            if (current <= depth) return (long) paragraph << 32 | i;
+        }
+
+        int found = firstAfter(paragraph, depth);
+        if (found < 0) return -1;
+        brackets = paragraphs.get(found);
+        current = depthBefore(found);
+        for (int i = 0; i < brackets.length; i++) {
+            current += delta(brackets[i]);
+            if (current <= depth) return (long) found << 32 | i;
+        }
+        return -1;
+    }
+
+    // Last bracket up to paragraph/index entered at depth or less, the one that opened what closes at depth + 1
+    private long findOpening(int paragraph, int index, int depth) {
+        int[] brackets = paragraphs.get(paragraph);
+        int before = depth + 1; // Depth before the closing bracket
+        for (int i = index; i >= 0; i--) {
+            before -= delta(brackets[i]);
+            if (before <= depth) return (long) paragraph << 32 | i;
+        }
+
+        int found = lastBefore(paragraph, depth);
+        if (found < 0) return -1;
+        brackets = paragraphs.get(found);
+        before = depthBefore(found) + sum[leaves + found];
+        for (int i = brackets.length - 1; i >= 0; i--) {
+            before -= delta(brackets[i]);
+            if (before <= depth) return (long) found << 32 | i;
+        }
+        return -1;
+    }
+
+    // Depth at the start of a paragraph
+    private int depthBefore(int paragraph) {
+        int depth = 0;
+        for (int node = leaves + paragraph; node > 1; node >>= 1) {
+            if ((node & 1) == 1) depth += sum[node - 1]; // Left sibling comes before
+        }
+        return depth;
+    }
+
+    // First paragraph after paragraph where the depth after some bracket is at most depth, -1 if none
+    private int firstAfter(int paragraph, int depth) {
+        // Climb while the rest of each subtree cannot hold it, then descend into the first one that can
+        int node = leaves + paragraph;
+        int start = depthBefore(paragraph) + sum[node]; // Depth at the start of the next node
+        while (node > 1) {
+            if ((node & 1) == 0 && start + minAfter[node + 1] <= depth) {
+                node++;
+                break;
+            }
+            if ((node & 1) == 0) start += sum[node + 1];
+            node >>= 1;
+        }
+        if (node <= 1) return -1;
+        while (node < leaves) {
+            node <<= 1;
+            if (start + minAfter[node] > depth) {
+                start += sum[node];
+                node++;
+            }
+        }
+        return node - leaves < paragraphs.size() ? node - leaves : -1;
+    }
+
+    // Last paragraph before paragraph where the depth before some bracket is at most depth, -1 if none
+    private int lastBefore(int paragraph, int depth) {
+        int node = leaves + paragraph;
+        int end = depthBefore(paragraph); // Depth at the end of the previous node
+        while (node > 1) {
+            if ((node & 1) == 1 && end - sum[node - 1] + minBefore[node - 1] <= depth) {
+                node--;
+                break;
+            }
+            if ((node & 1) == 1) end -= sum[node - 1];
+            node >>= 1;
+        }
+        if (node <= 1) return -1;
+        while (node < leaves) {
+            node = node << 1 | 1;
+            if (end - sum[node] + minBefore[node] > depth) {
+                end -= sum[node];
+                node--;
+            }
+        }
+        return node - leaves;
+    }
+
+    // Brings the tree up to date with the recorded paragraphs
+    private void updateTree() {
+        if (rebuild || leaves < paragraphs.size()) {
+            leaves = Integer.highestOneBit(Math.max(1, paragraphs.size()) * 2 - 1);
+            sum = new int[2 * leaves];
+            minAfter = new int[2 * leaves];
+            minBefore = new int[2 * leaves];
+            for (int i = 0; i < leaves; i++) {
+                setLeaf(i);
+            }
+            for (int node = leaves - 1; node >= 1; node--) {
+                combine(node);
+            }
+            rebuild = false;
+        } else {
+            for (int paragraph : changedLeaves) {
+                setLeaf(paragraph);
+                for (int node = (leaves + paragraph) >> 1; node >= 1; node >>= 1) {
+                    combine(node);
+                }
+            }
+        }
+        changedLeaves.clear();
+    }
+
+    private void setLeaf(int paragraph) {
+        int[] brackets = paragraph < paragraphs.size() && paragraphs.get(paragraph) != null ? paragraphs.get(paragraph) : NONE;
+        int depth = 0;
+        int lowestAfter = NO_MINIMUM;
+        int lowestBefore = NO_MINIMUM;
+        for (int bracket : brackets) {
+            lowestBefore = Math.min(lowestBefore, depth);
+            depth += delta(bracket);
+            lowestAfter = Math.min(lowestAfter, depth);
+        }
+        int node = leaves + paragraph;
+        sum[node] = depth;
+        minAfter[node] = lowestAfter;
+        minBefore[node] = lowestBefore;
+    }
+
+    private void combine(int node) {
+        int left = node << 1;
+        int right = left | 1;
+        sum[node] = sum[left] + sum[right];
+        minAfter[node] = Math.min(minAfter[left], sum[left] + minAfter[right]);
+        minBefore[node] = Math.min(minBefore[left], sum[left] + minBefore[right]);
+    }
+
+    // Index of the bracket at column, -1 if there is none
+    private static int indexOf(int[] brackets, int column) {
+        int low = 0;
+        int high = brackets.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int at = brackets[middle] >>> 3;
+            if (at < column) low = middle + 1;
+            else if (at > column) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    private static boolean isOpening(int bracket) {
+        return (bracket & 1) == 0;
+    }
+
+    private static int delta(int bracket) {
+        return isOpening(bracket) ? 1 : -1;
+    }
+}
@@ -0,0 +1,58 @@
+package org.explement.jde.service;
+
+// Handle of a program started from the editor, used to stop it
+public class ProgramRun {
+
+    // Why the run was stopped early (null while it is allowed to finish)
+    private volatile String stopReason;
+    // Whatever is executing the program right now, if anything
+    private volatile Process process;
+    private volatile ExecutionWorker worker;
+
+    public void stop() {
+        stop("Stopped");
+    }
+
+    // Ends the run together with every process it started
+    void stop(String reason) {
+        if (stopReason != null) return;
+        stopReason = reason;
+        destroy();
+    }
+
+    public boolean isStopped() {
+        return stopReason != null;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    void attach(Process process) {
+        this.process = process;
+        if (isStopped()) destroy(); // Stopped while it was starting
+    }
+
+    void attach(ExecutionWorker worker) {
+        this.worker = worker;
+        if (isStopped()) destroy();
+    }
+
+    void detach() {
+        process = null;
+        worker = null;
+    }
+
+    private void destroy() {
+        Process process = this.process;
+        if (process != null) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+
+        ExecutionWorker worker = this.worker;
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+}
@@ -0,0 +1,628 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.ProjectBuildResult;
+import org.explement.jde.model.Symbol;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Builds every .java file under a project root with one in-process javac call, into an output directory outside the project
+// Per source it remembers a hash, the classes it produced, the names it uses and the classes those refer to,
+// so a build only compiles changed sources, the types extending them, and the sources using any of those
+public class ProjectBuildService {
+
+    private static final int MAGIC = 0x4A444231; // "JDB1"
+    private static final List<String> COMPILER_OPTIONS = List.of("-proc:none", "-g");
+    private static final long HASH_MULTIPLIER = 1_000_003;
+
+    private final Path buildDir;
+    private final FileIOService fileIOService;
+    private final SyntaxHighlighterService highlighterService;
+    // In-process compiler (null when the runtime has no javac)
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    // Own file manager, its class and source paths point into the project
+    private StandardJavaFileManager standardFileManager;
+    // Builds run here one at a time, everything below is only touched on this thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "project-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // State of the last successful build of root, by path relative to it
+    private Path root;
+    private Map<String, SourceEntry> entries = new HashMap<>();
+    // Class files in the output directory by binary name, read on first use
+    private Map<String, byte[]> classBytes;
+
+    public ProjectBuildService(Path buildDir, FileIOService fileIOService, SyntaxHighlighterService highlighterService) {
+        this.buildDir = buildDir;
+        this.fileIOService = fileIOService;
+        this.highlighterService = highlighterService;
+    }
+
+    // Builds root, buffers hold the text of unsaved tabs by absolute path and are compiled instead of the files on disk
+    public CompletableFuture<ProjectBuildResult> build(Path root, Map<String, String> buffers) {
+        Map<Path, String> normalized = new HashMap<>();
+        buffers.forEach((path, text) -> normalized.put(Path.of(path).toAbsolutePath().normalize(), text));
+        return CompletableFuture.supplyAsync(() -> buildNow(root.toAbsolutePath().normalize(), normalized), executor);
+    }
+
+    // Where the classes of root are built to, may not exist yet
+    public Path getOutputDir(Path root) {
+        return outputDir(root.toAbsolutePath().normalize());
+    }
+
+    private ProjectBuildResult buildNow(Path root, Map<Path, String> buffers) {
+        long start = System.nanoTime();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler available");
+        }
+        if (!root.equals(this.root)) {
+            this.root = root;
+            entries = load(root);
+            classBytes = null;
+        }
+        Path outputDir = outputDir(root);
+
+        // Stat every file, read and hash only those whose stat moved or that have a buffer
+        List<Source> sources = scan(root).parallelStream().map(file -> check(file, buffers)).toList();
+        Map<String, Source> byPath = new HashMap<>();
+        for (Source source : sources) {
+            byPath.put(source.path(), source);
+        }
+
+        Set<String> removed = new HashSet<>(entries.keySet());
+        removed.removeAll(byPath.keySet());
+        Set<String> compile = toCompile(sources, byPath, removed);
+
+        if (compile.isEmpty() && removed.isEmpty()) {
+            return result(true, List.of(), 0, sources.size(), start);
+        }
+
+        // Unchanged dependents were not read yet
+        List<Source> units = compile.parallelStream()
+                .map(path -> byPath.get(path).withText(this::read))
+                .sorted(Comparator.comparing(Source::path))
+                .toList();
+
+        // Classes of recompiled and removed sources must not satisfy references from the output directory
+        Set<String> hidden = new HashSet<>();
+        for (String path : compile) hidden.addAll(binaryNames(entries.get(path)));
+        for (String path : removed) hidden.addAll(binaryNames(entries.get(path)));
+
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        HidingFileManager fileManager;
+        boolean success;
+        try {
+            Files.createDirectories(outputDir);
+            if (standardFileManager == null) {
+                standardFileManager = compiler.getStandardFileManager(null, Locale.getDefault(), null);
+            }
+            standardFileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, List.of(outputDir));
+            standardFileManager.setLocationFromPaths(StandardLocation.SOURCE_PATH, sourceRoots(sources, units));
+            fileManager = new HidingFileManager(standardFileManager, hidden);
+
+            List<JavaFileObject> files = new ArrayList<>();
+            for (Source unit : units) {
+                files.add(new BufferSource(root.resolve(unit.path()).toUri(), unit.text()));
+            }
+            // Only removals left nothing to compile, javac refuses an empty task
+            success = files.isEmpty() || compiler.getTask(null, fileManager, collector, COMPILER_OPTIONS, null, files).call();
+        } catch (IOException e) {
+            return result(false, List.of(e.getMessage()), compile.size(), sources.size(), start);
+        }
+
+        List<String> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            diagnostics.add(format(diagnostic));
+        }
+        if (!success) { // Nothing is written, the next build tries the same sources again
+            return result(false, diagnostics, compile.size(), sources.size(), start);
+        }
+
+        try {
+            commit(outputDir, fileManager, units, compile, removed);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            entries = new HashMap<>(); // Output directory is in an unknown state, start over next time
+            classBytes = null;
+            persist(root);
+            try {
+                deleteRecursively(outputDir);
+            } catch (IOException again) {
+                System.out.println(again.getMessage());
+            }
+            diagnostics.add("Could not write classes: " + e.getMessage());
+            return result(false, diagnostics, compile.size(), sources.size(), start);
+        }
+        persist(root);
+        return result(true, diagnostics, compile.size(), sources.size(), start);
+    }
+
+    // Changed sources, the types extending them and the sources using any of those, by name or by class reference
+    private Set<String> toCompile(List<Source> sources, Map<String, Source> byPath, Set<String> removed) {
+        Set<String> affected = new HashSet<>(removed);
+        for (Source source : sources) {
+            if (source.changed()) affected.add(source.path());
+        }
+        if (affected.isEmpty()) return Set.of();
+
+        Map<String, String> owners = new HashMap<>(); // Internal class name to its source
+        entries.values().forEach(entry -> entry.classes().forEach(name -> owners.put(name, entry.path())));
+
+        // Subtypes inherit whatever changed, however deep
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (SourceEntry entry : entries.values()) {
+                if (affected.contains(entry.path())) continue;
+                for (String supertype : entry.supertypes()) {
+                    if (affected.contains(owners.get(supertype))) {
+                        affected.add(entry.path());
+                        grew = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Type names the affected sources declared before and declare now, and their classes
+        Set<String> names = new HashSet<>();
+        Set<String> classes = new HashSet<>();
+        for (String path : affected) {
+            SourceEntry entry = entries.get(path);
+            if (entry != null) {
+                classes.addAll(entry.classes());
+                for (String name : entry.classes()) names.add(simpleName(name));
+            }
+            Source source = byPath.get(path);
+            if (source != null && source.text() != null) names.addAll(declaredTypes(source.text()));
+        }
+
+        Set<String> compile = new HashSet<>();
+        for (Source source : sources) {
+            SourceEntry entry = entries.get(source.path());
+            if (affected.contains(source.path()) || entry == null
+                    || !Collections.disjoint(entry.names(), names) || !Collections.disjoint(entry.references(), classes)) {
+                compile.add(source.path());
+            }
+        }
+        return compile;
+    }
+
+    // Replaces the classes of recompiled and removed sources in the output directory, and their entries
+    private void commit(Path outputDir, HidingFileManager fileManager, List<Source> units, Set<String> compile, Set<String> removed) throws IOException {
+        Map<String, byte[]> classes = classes(outputDir);
+        for (String path : removed) {
+            deleteClasses(outputDir, classes, entries.remove(path));
+        }
+        for (String path : compile) {
+            deleteClasses(outputDir, classes, entries.get(path));
+        }
+
+        // Group the new classes by the source they came from
+        Map<String, byte[]> compiled = fileManager.getClassBytes();
+        Map<String, List<String>> bySource = new HashMap<>();
+        for (String name : compiled.keySet()) {
+            URI origin = fileManager.getOrigin(name);
+            String path = origin == null ? null : root.relativize(Path.of(origin)).toString();
+            bySource.computeIfAbsent(path, key -> new ArrayList<>()).add(name);
+        }
+
+        for (Map.Entry<String, byte[]> entry : compiled.entrySet()) {
+            Path classFile = outputDir.resolve(entry.getKey().replace('.', File.separatorChar) + ".class");
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, entry.getValue());
+            classes.put(entry.getKey(), entry.getValue());
+        }
+
+        for (Source unit : units) { // Sources without classes (package-info, only comments) get an entry too
+            entries.put(unit.path(), analyze(unit, bySource.getOrDefault(unit.path(), List.of()), compiled));
+        }
+        for (Map.Entry<String, List<String>> group : bySource.entrySet()) {
+            if (group.getKey() == null || compile.contains(group.getKey())) continue;
+            // Compiled implicitly from the source path, its file on disk is what javac saw
+            BasicFileAttributes attrs = Files.readAttributes(root.resolve(group.getKey()), BasicFileAttributes.class);
+            String text = read(group.getKey());
+            Source unit = new Source(group.getKey(), attrs.lastModifiedTime().toMillis(), attrs.size(), text, hash(text), true);
+            entries.put(unit.path(), analyze(unit, group.getValue(), compiled));
+        }
+    }
+
+    private SourceEntry analyze(Source unit, List<String> binaryNames, Map<String, byte[]> compiled) {
+        List<String> classes = new ArrayList<>();
+        Set<String> supertypes = new HashSet<>();
+        Set<String> references = new HashSet<>();
+        List<String> mainClasses = new ArrayList<>();
+        for (String binaryName : binaryNames) {
+            ClassFileReader reader = new ClassFileReader(compiled.get(binaryName));
+            classes.add(binaryName.replace('.', '/'));
+            supertypes.addAll(reader.supertypes);
+            references.addAll(reader.references);
+            if (reader.hasMain) mainClasses.add(binaryName);
+        }
+        classes.forEach(references::remove);
+        references.removeIf(ProjectBuildService::isPlatformClass);
+        supertypes.removeIf(ProjectBuildService::isPlatformClass);
+
+        TokenScan scan = new TokenScan(unit.text());
+        highlighterService.scanTokens(unit.text(), 0, unit.text().length(), SyntaxHighlighterService.STATE_DEFAULT, scan);
+        return new SourceEntry(unit.path(), unit.modified(), unit.size(), unit.hash(), scan.packageName.toString(),
+                classes, List.copyOf(supertypes), references, scan.names, mainClasses);
+    }
+
+    private Source check(Source file, Map<Path, String> buffers) {
+        String buffer = buffers.get(root.resolve(file.path()));
+        SourceEntry previous = entries.get(file.path());
+        if (buffer == null && previous != null && previous.modified() == file.modified() && previous.size() == file.size()) {
+            return file; // Same stat as when it was compiled
+        }
+
+        String text = buffer != null ? buffer : read(file.path());
+        long hash = hash(text);
+        long modified = buffer != null ? -1 : file.modified(); // Built from a buffer, the file must be read next time
+        return new Source(file.path(), modified, file.size(), text, hash, previous == null || previous.hash() != hash);
+    }
+
+    // Directories the package names start in, so javac finds sources nobody asked it to compile
+    private List<Path> sourceRoots(List<Source> sources, List<Source> units) {
+        Map<String, String> packages = new HashMap<>();
+        entries.values().forEach(entry -> packages.put(entry.path(), entry.packageName()));
+        for (Source unit : units) {
+            TokenScan scan = new TokenScan(unit.text());
+            highlighterService.scanTokens(unit.text(), 0, unit.text().length(), SyntaxHighlighterService.STATE_DEFAULT, scan);
+            packages.put(unit.path(), scan.packageName.toString());
+        }
+
+        Set<Path> roots = new LinkedHashSet<>();
+        for (Source source : sources) {
+            String packageName = packages.get(source.path());
+            if (packageName == null) continue;
+            Path directory = root.resolve(source.path()).getParent();
+            if (!packageName.isEmpty()) {
+                Path packagePath = Path.of(packageName.replace('.', File.separatorChar));
+                if (directory.endsWith(packagePath)) { // Otherwise the file is misplaced, its own directory will do
+                    for (int i = 0; i < packagePath.getNameCount(); i++) directory = directory.getParent();
+                }
+            }
+            roots.add(directory);
+        }
+        return List.copyOf(roots);
+    }
+
+    // Type names declared in text, including nested ones
+    private Set<String> declaredTypes(String text) {
+        SymbolParser parser = new SymbolParser(text, null, checkpoint -> false);
+        parser.parse(highlighterService, 0);
+        Set<String> names = new HashSet<>();
+        for (Symbol symbol : parser.symbols) {
+            if (symbol.kind().isType()) names.add(symbol.name());
+        }
+        return names;
+    }
+
+    private ProjectBuildResult result(boolean success, List<String> diagnostics, int compiled, int total, long start) {
+        List<String> mainClasses = new ArrayList<>();
+        Map<String, byte[]> classes = Map.of();
+        if (success) {
+            entries.values().forEach(entry -> mainClasses.addAll(entry.mainClasses()));
+            Collections.sort(mainClasses);
+            try {
+                classes = Map.copyOf(classes(outputDir(root)));
+            } catch (IOException e) {
+                return new ProjectBuildResult(false, List.of(e.getMessage()), compiled, total, List.of(), Map.of(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+        return new ProjectBuildResult(success, diagnostics, compiled, total, mainClasses, classes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Every class in the output directory, read once and then kept in step with it
+    private Map<String, byte[]> classes(Path outputDir) throws IOException {
+        if (classBytes != null) return classBytes;
+
+        classBytes = new HashMap<>();
+        if (!Files.isDirectory(outputDir)) return classBytes;
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".class")).toList()) {
+                String relative = outputDir.relativize(file).toString();
+                String name = relative.substring(0, relative.length() - ".class".length()).replace(File.separatorChar, '.');
+                classBytes.put(name, Files.readAllBytes(file));
+            }
+        }
+        return classBytes;
+    }
+
+    private static void deleteClasses(Path outputDir, Map<String, byte[]> classes, SourceEntry entry) throws IOException {
+        if (entry == null) return;
+        for (String name : entry.classes()) {
+            Files.deleteIfExists(outputDir.resolve(name.replace('/', File.separatorChar) + ".class"));
+            classes.remove(name.replace('/', '.'));
+        }
+    }
+
+    private static Collection<String> binaryNames(SourceEntry entry) {
+        if (entry == null) return List.of();
+        return entry.classes().stream().map(name -> name.replace('/', '.')).toList();
+    }
+
+    private String format(Diagnostic<? extends JavaFileObject> diagnostic) {
+        String file = diagnostic.getSource() == null ? "" : root.relativize(Path.of(diagnostic.getSource().toUri())) + ":";
+        long line = Math.max(diagnostic.getLineNumber(), 0); // NOPOS is -1
+        long column = Math.max(diagnostic.getColumnNumber(), 0);
+        return file + line + ":" + column + ": " + diagnostic.getKind() + ": " + diagnostic.getMessage(Locale.getDefault());
+    }
+
+    private static String simpleName(String internalName) {
+        int slash = internalName.lastIndexOf('/');
+        int dollar = internalName.lastIndexOf('$');
+        return internalName.substring(Math.max(slash, dollar) + 1);
+    }
+
+    // JDK classes never need the project rebuilt
+    private static boolean isPlatformClass(String internalName) {
+        return internalName.startsWith("java/") || internalName.startsWith("javax/") || internalName.startsWith("jdk/") || internalName.startsWith("sun/");
+    }
+
+    // Every .java file under root with its size and mtime, skipping hidden directories
+    private static List<Source> scan(Path root) {
+        List<Source> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    boolean hidden = !dir.equals(root) && dir.getFileName().toString().startsWith(".");
+                    return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                        files.add(new Source(root.relativize(file).toString(), attrs.lastModifiedTime().toMillis(), attrs.size(), null, 0, false));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE; // Unreadable, leave it out
+                }
+            });
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return files;
+    }
+
+    private String read(String path) {
+        try {
+            return fileIOService.decode(ByteBuffer.wrap(Files.readAllBytes(root.resolve(path)))).text();
+        } catch (IOException e) {
+            return ""; // Deleted since the scan
+        }
+    }
+
+    private static long hash(CharSequence text) {
+        long hash = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            hash = hash * HASH_MULTIPLIER + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private Path outputDir(Path root) {
+        return buildDir.resolve(Integer.toHexString(root.toString().hashCode()));
+    }
+
+    private Path stateFile(Path root) {
+        return buildDir.resolve(Integer.toHexString(root.toString().hashCode()) + ".state");
+    }
+
+    // Builds from another javac need every class compiled again
+    private static String compilerVersion() {
+        return Runtime.version() + " " + String.join(" ", COMPILER_OPTIONS);
+    }
+
+    private void persist(Path root) {
+        try {
+            Files.createDirectories(buildDir);
+            Path temp = Files.createTempFile(buildDir, "state", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(root.toString());
+                out.writeUTF(compilerVersion());
+                out.writeInt(entries.size());
+                for (SourceEntry entry : entries.values()) {
+                    out.writeUTF(entry.path());
+                    out.writeLong(entry.modified());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.hash());
+                    out.writeUTF(entry.packageName());
+                    writeStrings(out, entry.classes());
+                    writeStrings(out, entry.supertypes());
+                    writeStrings(out, entry.references());
+                    writeStrings(out, entry.names());
+                    writeStrings(out, entry.mainClasses());
+                }
+            }
+            Files.move(temp, stateFile(root), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // Entries of an earlier session, empty (and the output directory cleared) if they do not match root or this javac
+    private Map<String, SourceEntry> load(Path root) {
+        Map<String, SourceEntry> loaded = new HashMap<>();
+        Path file = stateFile(root);
+        if (Files.isRegularFile(file) && Files.isDirectory(outputDir(root))) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readUTF().equals(root.toString()) && in.readUTF().equals(compilerVersion())) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        SourceEntry entry = new SourceEntry(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readUTF(),
+                                readStrings(in), readStrings(in), new HashSet<>(readStrings(in)), new HashSet<>(readStrings(in)), readStrings(in));
+                        loaded.put(entry.path(), entry);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage()); // Corrupt or partial, build from scratch
+                loaded.clear();
+            }
+        }
+
+        if (loaded.isEmpty()) {
+            try {
+                deleteRecursively(outputDir(root)); // Classes nobody knows the source of
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return List.of(strings);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // A .java file under the root, text is null until it has been read
+    private record Source(String path, long modified, long size, String text, long hash, boolean changed) {
+        Source withText(Function<String, String> reader) {
+            return text != null ? this : new Source(path, modified, size, reader.apply(path), hash, changed);
+        }
+    }
+
+    // What the last successful build knows about a source, class names are internal names
+    private record SourceEntry(String path, long modified, long size, long hash, String packageName, List<String> classes,
+                               List<String> supertypes, Set<String> references, Set<String> names, List<String> mainClasses) {
+    }
+
+    // Identifiers a source uses, and its package
+    private static class TokenScan implements JavaLexer.TokenSink {
+        private final String text;
+        private final Set<String> names = new HashSet<>();
+        private final StringBuilder packageName = new StringBuilder();
+        private int packageState; // 0 before "package", 1 inside its name, 2 after
+
+        TokenScan(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void token(JavaLexer.Token token, int start, int end) {
+            switch (token) {
+                case IDENTIFIER, TYPE -> {
+                    String name = text.substring(start, end);
+                    names.add(name);
+                    if (packageState == 1) packageName.append(name);
+                }
+                case ANNOTATION -> names.add(text.substring(start + 1, end));
+                case KEYWORD -> {
+                    if (packageState == 0 && text.startsWith("package", start) && end - start == 7) packageState = 1;
+                    else if (packageState == 0 && !text.startsWith("import", start)) packageState = 2;
+                }
+                case OPERATOR -> {
+                    if (packageState == 1 && text.charAt(start) == '.') packageName.append('.');
+                }
+                case SEMICOLON -> {
+                    if (packageState == 1) packageState = 2;
+                }
+                default -> { }
+            }
+        }
+    }
+
+    // Hides the classes being replaced, so only the new sources can satisfy references to them
+    private static class HidingFileManager extends InMemoryFileManager {
+        private final Set<String> hidden;
+
+        HidingFileManager(StandardJavaFileManager fileManager, Set<String> hidden) {
+            super(fileManager);
+            this.hidden = hidden;
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+            Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+            if (location != StandardLocation.CLASS_PATH || hidden.isEmpty()) return files;
+
+            List<JavaFileObject> visible = new ArrayList<>();
+            for (JavaFileObject file : files) {
+                if (file.getKind() != JavaFileObject.Kind.CLASS || !hidden.contains(inferBinaryName(location, file))) visible.add(file);
+            }
+            return visible;
+        }
+    }
+
+    // Source text from a tab or the disk, under the file's own URI so diagnostics name the file
+    private static class BufferSource extends SimpleJavaFileObject {
+        private final String text;
+
+        BufferSource(URI uri, String text) {
+            super(uri, Kind.SOURCE);
+            this.text = text;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+}
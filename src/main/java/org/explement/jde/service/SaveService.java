@@ -0,0 +1,73 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.FileFormat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Saves files atomically on a background thread, so the FX thread never waits on the disk
+public class SaveService {
+
+    private final FileIOService fileIOService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "save-service");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Latest text waiting to be written, by target, older requests are replaced
+    private final Map<Path, Request> pending = new ConcurrentHashMap<>();
+
+    public SaveService(FileIOService fileIOService) {
+        this.fileIOService = fileIOService;
+    }
+
+    // Completes once this text, or text saved after it, is on disk
+    // True when this text was written, false when a newer save replaced it and wrote its own text instead
+    public CompletableFuture<Boolean> save(Path target, String content, FileFormat format) {
+        Request request = new Request(content, format, new CompletableFuture<>());
+        Request replaced = pending.put(target, request);
+        if (replaced == null) {
+            executor.execute(() -> write(target));
+        } else { // Never written, settles with the newer save
+            request.done().whenComplete((ignored, error) -> {
+                if (error == null) replaced.done().complete(false);
+                else replaced.done().completeExceptionally(error);
+            });
+        }
+        return request.done();
+    }
+
+    // Blocks until every save requested so far has finished, or the timeout passes
+    public void awaitPending(Duration timeout) {
+        try {
+            executor.submit(() -> { }).get(timeout.toMillis(), TimeUnit.MILLISECONDS); // Runs after all queued writes
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void write(Path target) {
+        Request request = pending.remove(target);
+        if (request == null) return;
+
+        try {
+            fileIOService.writeAtomically(target, request.content(), request.format());
+            request.done().complete(true);
+        } catch (Exception e) {
+            request.done().completeExceptionally(e);
+        }
+    }
+
+    private record Request(String content, FileFormat format, CompletableFuture<Boolean> done) {
+    }
+}
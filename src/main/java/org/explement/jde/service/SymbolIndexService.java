@@ -0,0 +1,175 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.Symbol;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// Declarations of every open tab, kept in memory and updated per edit
+// An edit only re-parses from the member boundary before it until the parse meets a known boundary again
+public class SymbolIndexService {
+
+    private final SyntaxHighlighterService highlighterService;
+    // By tab path, only touched on the JavaFX thread
+    private final Map<String, FileSymbols> files = new HashMap<>();
+
+    public SymbolIndexService(SyntaxHighlighterService highlighterService) {
+        this.highlighterService = highlighterService;
+    }
+
+    // Indexes a tab from scratch
+    public void index(String path, String text) {
+        FileSymbols fileSymbols = new FileSymbols();
+        SymbolParser parser = new SymbolParser(text, null, checkpoint -> false);
+        parser.parse(highlighterService, 0);
+        fileSymbols.symbols = parser.symbols;
+        fileSymbols.checkpoints.add(new SymbolParser.Checkpoint(0, null));
+        fileSymbols.checkpoints.addAll(parser.checkpoints);
+        files.put(path, fileSymbols);
+    }
+
+    // Records an edit of a tab, the affected declarations are re-parsed on the next lookup
+    public void edit(String path, int position, int removedLength, int insertedLength) {
+        FileSymbols fileSymbols = files.get(path);
+        if (fileSymbols == null) return;
+
+        int change = insertedLength - removedLength;
+        if (fileSymbols.dirtyFrom < 0) {
+            fileSymbols.dirtyFrom = position;
+            fileSymbols.dirtyTo = position + insertedLength;
+        } else { // Grow the edited range to cover this edit too
+            fileSymbols.dirtyTo = position + removedLength >= fileSymbols.dirtyTo ? position + insertedLength : fileSymbols.dirtyTo + change;
+            fileSymbols.dirtyFrom = Math.min(fileSymbols.dirtyFrom, position);
+        }
+        fileSymbols.delta += change;
+    }
+
+    // Declarations of a tab in text order, text is only read if edits are pending
+    public List<Symbol> symbols(String path, Supplier<String> text) {
+        refresh(path, text);
+        FileSymbols fileSymbols = files.get(path);
+        return fileSymbols == null ? List.of() : List.copyOf(fileSymbols.symbols);
+    }
+
+    // Applies the pending edits of a tab
+    public void refresh(String path, Supplier<String> text) {
+        FileSymbols fileSymbols = files.get(path);
+        if (fileSymbols == null || fileSymbols.dirtyFrom < 0) return;
+
+        List<SymbolParser.Checkpoint> oldCheckpoints = fileSymbols.checkpoints;
+        List<Symbol> oldSymbols = fileSymbols.symbols;
+        int dirtyTo = fileSymbols.dirtyTo;
+        int delta = fileSymbols.delta;
+
+        // Text before the last boundary ahead of the first edit is unchanged, parse on from there
+        int restart = Math.max(0, floor(oldCheckpoints, fileSymbols.dirtyFrom));
+        SymbolParser.Checkpoint from = oldCheckpoints.get(restart);
+        int[] known = { -1 };
+        SymbolParser parser = new SymbolParser(text.get(), from.scope(), checkpoint -> {
+            if (checkpoint.offset() < dirtyTo) return false;
+            int index = floor(oldCheckpoints, checkpoint.offset() - delta); // Same boundary before the edits?
+            if (index < 0 || oldCheckpoints.get(index).offset() != checkpoint.offset() - delta
+                    || !Objects.equals(oldCheckpoints.get(index).scope(), checkpoint.scope())) return false;
+            known[0] = index;
+            return true;
+        });
+        parser.parse(highlighterService, from.offset());
+
+        List<SymbolParser.Checkpoint> checkpoints = new ArrayList<>(oldCheckpoints.subList(0, restart + 1));
+        checkpoints.addAll(parser.checkpoints);
+        List<Symbol> symbols = new ArrayList<>();
+        for (Symbol symbol : oldSymbols) {
+            if (symbol.offset() >= from.offset()) break;
+            symbols.add(symbol);
+        }
+        symbols.addAll(parser.symbols);
+
+        if (known[0] >= 0) { // The rest is unchanged, only shifted
+            int tailOffset = oldCheckpoints.get(known[0]).offset();
+            for (SymbolParser.Checkpoint checkpoint : oldCheckpoints.subList(known[0], oldCheckpoints.size())) {
+                checkpoints.add(new SymbolParser.Checkpoint(checkpoint.offset() + delta, checkpoint.scope()));
+            }
+            for (Symbol symbol : oldSymbols) {
+                if (symbol.offset() >= tailOffset) symbols.add(delta == 0 ? symbol : symbol.withOffset(symbol.offset() + delta));
+            }
+        }
+
+        fileSymbols.checkpoints = checkpoints;
+        fileSymbols.symbols = symbols;
+        fileSymbols.dirtyFrom = -1;
+        fileSymbols.delta = 0;
+    }
+
+    public void rename(String oldPath, String newPath) {
+        FileSymbols fileSymbols = files.remove(oldPath);
+        if (fileSymbols != null) files.put(newPath, fileSymbols);
+    }
+
+    // Declarations of all tabs, tabs with pending edits should be refreshed first
+    public List<Symbol> allSymbols() {
+        List<Symbol> symbols = new ArrayList<>();
+        for (FileSymbols fileSymbols : files.values()) {
+            symbols.addAll(fileSymbols.symbols);
+        }
+        return symbols;
+    }
+
+    // Declarations across all tabs whose name starts with, then contains, the query, ignoring case
+    // Tabs with pending edits should be refreshed first
+    public List<Match> search(String query, int limit) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        List<Match> prefixMatches = new ArrayList<>();
+        List<Match> otherMatches = new ArrayList<>();
+        for (Map.Entry<String, FileSymbols> file : files.entrySet()) {
+            for (Symbol symbol : file.getValue().symbols) {
+                String name = symbol.name().toLowerCase(Locale.ROOT);
+                if (name.startsWith(lowerQuery)) prefixMatches.add(new Match(file.getKey(), symbol));
+                else if (name.contains(lowerQuery)) otherMatches.add(new Match(file.getKey(), symbol));
+            }
+        }
+
+        Comparator<Match> shortestFirst = Comparator.comparingInt((Match match) -> match.symbol().name().length())
+                .thenComparing(match -> match.symbol().name());
+        prefixMatches.sort(shortestFirst);
+        otherMatches.sort(shortestFirst);
+        prefixMatches.addAll(otherMatches);
+        return prefixMatches.subList(0, Math.min(limit, prefixMatches.size()));
+    }
+
+    // Index of the last checkpoint at or before offset, -1 if none
+    private static int floor(List<SymbolParser.Checkpoint> checkpoints, int offset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (checkpoints.get(middle).offset() <= offset) low = middle + 1;
+            else high = middle - 1;
+        }
+        return high;
+    }
+
+    public record Match(String path, Symbol symbol) {
+        @Override
+        public String toString() {
+            String container = symbol.container().isEmpty() ? "" : " in " + symbol.container();
+            return symbol + container + "  (" + new File(path).getName() + ")";
+        }
+    }
+
+    private static class FileSymbols {
+        // Both in text order, checkpoints start with offset 0
+        private List<Symbol> symbols = new ArrayList<>();
+        private List<SymbolParser.Checkpoint> checkpoints = new ArrayList<>();
+        // Edited range in current offsets (-1 when none), old offsets past it moved by delta
+        private int dirtyFrom = -1;
+        private int dirtyTo;
+        private int delta;
+    }
+}
@@ -0,0 +1,248 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Finds type, method and field declarations in the token stream, member bodies and initializers are skipped
+// Leaves a checkpoint at every member boundary, parsing can restart at any of them
+class SymbolParser implements JavaLexer.TokenSink {
+
+    // Enclosing type bodies, innermost first, equal whenever the nesting is the same
+    record Scope(Scope parent, String typeName, boolean enumConstants, int depth) {
+    }
+
+    // Parser state between two members: only the enclosing types
+    record Checkpoint(int offset, Scope scope) {
+    }
+
+    private final String text;
+    // Asked about each new checkpoint, true when the rest of the file is known already
+    private final Predicate<Checkpoint> converged;
+    final List<Symbol> symbols = new ArrayList<>();
+    final List<Checkpoint> checkpoints = new ArrayList<>();
+    private boolean stopped;
+
+    private Scope scope;
+    // Braces of a body or initializer being skipped, and whether a declaration continues after it
+    private int blockDepth;
+    private boolean resumeHeader;
+
+    // The member declaration being read
+    private Symbol.Kind typeKind;
+    private String typeName;
+    private boolean tentativeRecord; // "record" seen, a record only if a name follows
+    private int recordOffset;
+    private String lastName;
+    private int lastNameOffset;
+    private boolean nameTaken; // lastName is a symbol already
+    private boolean callable;
+    private boolean assigned;
+    private int parenDepth;
+    private int angleDepth;
+    private boolean afterAnnotation;
+
+    SymbolParser(String text, Scope scope, Predicate<Checkpoint> converged) {
+        this.text = text;
+        this.scope = scope;
+        this.converged = converged;
+    }
+
+    // Parses from offset, which must be a checkpoint, to the end or until converged
+    void parse(SyntaxHighlighterService highlighterService, int offset) {
+        int state = SyntaxHighlighterService.STATE_DEFAULT;
+        int lineStart = offset;
+        while (lineStart <= text.length() && !stopped) { // Line by line, so a converged parse stops early
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = text.length();
+            state = highlighterService.scanTokens(text, lineStart, lineEnd, state, this);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    @Override
+    public void token(JavaLexer.Token token, int start, int end) {
+        if (stopped || token == JavaLexer.Token.COMMENT) return;
+        char c = text.charAt(start);
+
+        if (blockDepth > 0) {
+            if (token == JavaLexer.Token.BRACE) {
+                if (c == '{') blockDepth++;
+                else if (--blockDepth == 0 && !resumeHeader) endMember(end);
+            }
+            return;
+        }
+
+        if (tentativeRecord && token != JavaLexer.Token.IDENTIFIER) { // Just a name that happens to be "record"
+            tentativeRecord = false;
+            typeKind = null;
+            setName("record", recordOffset);
+        }
+
+        switch (token) {
+            case ANNOTATION -> {
+                afterAnnotation = true;
+                return;
+            }
+            case KEYWORD -> keyword(start, end);
+            case IDENTIFIER -> identifier(start, end);
+            case PAREN -> paren(c);
+            case BRACE -> brace(c, end);
+            case SEMICOLON -> semicolon(end);
+            case OPERATOR -> operator(c, start);
+            default -> { }
+        }
+        afterAnnotation = false;
+    }
+
+    private void keyword(int start, int end) {
+        if (parenDepth > 0 || assigned) return;
+        switch (text.substring(start, end)) {
+            case "class" -> typeKind = Symbol.Kind.CLASS;
+            case "interface" -> typeKind = Symbol.Kind.INTERFACE;
+            case "enum" -> typeKind = Symbol.Kind.ENUM;
+            case "@interface" -> typeKind = Symbol.Kind.ANNOTATION;
+            default -> { }
+        }
+    }
+
+    private void identifier(int start, int end) {
+        if (parenDepth > 0 || assigned || angleDepth > 0) return; // Parameters, initializers and type arguments
+        String word = text.substring(start, end);
+
+        if (typeKind != null && typeName == null) {
+            tentativeRecord = false;
+            typeName = word;
+            addSymbol(word, typeKind, start);
+        } else if (typeKind == null && !callable && word.equals("record")) {
+            tentativeRecord = true;
+            typeKind = Symbol.Kind.RECORD;
+            recordOffset = start;
+        } else if (typeKind == null) {
+            setName(word, start);
+        }
+    }
+
+    private void paren(char c) {
+        if (c == ')') {
+            if (parenDepth > 0) parenDepth--;
+            return;
+        }
+
+        if (parenDepth == 0 && !assigned && !afterAnnotation && typeKind == null && hasUntakenName()) {
+            if (scope.enumConstants()) {
+                takeName(Symbol.Kind.ENUM_CONSTANT);
+            } else {
+                takeName(lastName.equals(scope.typeName()) ? Symbol.Kind.CONSTRUCTOR : Symbol.Kind.METHOD);
+                callable = true;
+            }
+        }
+        parenDepth++;
+    }
+
+    private void brace(char c, int end) {
+        if (c == '{') {
+            if (parenDepth > 0 || assigned) { // Lambda or anonymous class inside the declaration
+                blockDepth = 1;
+                resumeHeader = true;
+            } else if (typeKind != null && typeName != null) {
+                scope = new Scope(scope, typeName, typeKind == Symbol.Kind.ENUM, scope == null ? 1 : scope.depth() + 1);
+                endMember(end);
+            } else {
+                if (scope != null && scope.enumConstants() && hasUntakenName()) takeName(Symbol.Kind.ENUM_CONSTANT);
+                blockDepth = 1; // Method body, initializer block or enum constant body
+                resumeHeader = false;
+            }
+            return;
+        }
+
+        if (parenDepth > 0 || assigned) return; // Unbalanced while typing
+        if (scope != null) scope = scope.parent();
+        endMember(end);
+    }
+
+    private void semicolon(int end) {
+        if (parenDepth > 0) return;
+        if (scope != null && scope.enumConstants()) { // The constants end here, members follow
+            if (hasUntakenName()) takeName(Symbol.Kind.ENUM_CONSTANT);
+            scope = new Scope(scope.parent(), scope.typeName(), false, scope.depth());
+        } else {
+            declarator();
+        }
+        endMember(end);
+    }
+
+    private void operator(char c, int start) {
+        if (parenDepth > 0) return;
+
+        if (c == '=' && !assigned && angleDepth == 0 && isAssignment(start)) {
+            declarator();
+            assigned = true;
+        } else if (c == '<' && !assigned) {
+            angleDepth++;
+        } else if (c == '>' && !assigned && angleDepth > 0) {
+            angleDepth--;
+        } else if (c == ',' && angleDepth == 0) {
+            if (scope != null && scope.enumConstants()) {
+                if (hasUntakenName()) takeName(Symbol.Kind.ENUM_CONSTANT);
+            } else if (!callable && typeKind == null) { // Next declarator of int a = 1, b
+                declarator();
+                assigned = false;
+            }
+            lastName = null;
+        }
+    }
+
+    // A single '=', not part of ==, !=, <= or >=
+    private boolean isAssignment(int position) {
+        char before = position > 0 ? text.charAt(position - 1) : ' ';
+        char after = position + 1 < text.length() ? text.charAt(position + 1) : ' ';
+        return after != '=' && before != '=' && before != '!' && before != '<' && before != '>';
+    }
+
+    // The name read so far is a field, unless this declaration is something else
+    private void declarator() {
+        if (!callable && typeKind == null && hasUntakenName() && !scope.enumConstants()) takeName(Symbol.Kind.FIELD);
+    }
+
+    private boolean hasUntakenName() {
+        return scope != null && lastName != null && !nameTaken;
+    }
+
+    private void setName(String name, int offset) {
+        lastName = name;
+        lastNameOffset = offset;
+        nameTaken = false;
+    }
+
+    private void takeName(Symbol.Kind kind) {
+        addSymbol(lastName, kind, lastNameOffset);
+        nameTaken = true;
+    }
+
+    private void addSymbol(String name, Symbol.Kind kind, int offset) {
+        symbols.add(new Symbol(name, kind, scope == null ? "" : scope.typeName(), offset, scope == null ? 0 : scope.depth()));
+    }
+
+    private void endMember(int end) {
+        typeKind = null;
+        typeName = null;
+        tentativeRecord = false;
+        lastName = null;
+        nameTaken = false;
+        callable = false;
+        assigned = false;
+        parenDepth = 0;
+        angleDepth = 0;
+        afterAnnotation = false;
+
+        Checkpoint checkpoint = new Checkpoint(end, scope);
+        if (converged.test(checkpoint)) {
+            stopped = true;
+            return;
+        }
+        checkpoints.add(checkpoint);
+    }
+}
@@ -2,17 +2,16 @@ package org.explement.jde.service;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.explement.jde.util.RegexUtils;
+import org.explement.jde.metrics.HighlightEvent;
+import org.explement.jde.metrics.Metrics;
 import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 public class SyntaxHighlighterService {
 
     // Java keywords
-    private static final String[] KEYWORDS = {
+    static final String[] KEYWORDS = {
             "abstract","assert","break","case","catch","class",
             "const","continue","default","do","else","enum","extends","final",
             "finally","for","goto","if","implements","import","instanceof",
@@ -27,64 +26,84 @@ public class SyntaxHighlighterService {
             "String","Array","Class","Interface","Object","Enum"
     };
 
-    // Regex patterns for keywords and types
-    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
-    private static final String TYPE_PATTERN = "\\b(" + String.join("|", TYPES) +  ")\\b";
-
-    // Regex patterns for symbols, literals, and comments
-    private static final String PAREN_PATTERN = RegexUtils.PAREN_PATTERN;
-    private static final String BRACE_PATTERN = RegexUtils.BRACE_PATTERN;
-    private static final String BRACKET_PATTERN = RegexUtils.BRACKET_PATTERN;
-    private static final String SEMICOLON_PATTERN = RegexUtils.SEMICOLON_PATTERN;
-    private static final String INTEGER_PATTERN = RegexUtils.INTEGER_PATTERN;
-    private static final String COMMENT_PATTERN = RegexUtils.COMMENT_PATTERN;
-    private static final String STRING_PATTERN = RegexUtils.STRING_PATTERN;
-
-    // Combined regex pattern with named groups for syntax highlighting
-    private static final Pattern PATTERN = Pattern.compile(
-            "(?<KEYWORD>" + KEYWORD_PATTERN + ")"
-                    + "|(?<PAREN>" + PAREN_PATTERN + ")"
-                    + "|(?<BRACE>" + BRACE_PATTERN + ")"
-                    + "|(?<BRACKET>" + BRACKET_PATTERN + ")"
-                    + "|(?<SEMICOLON>" + SEMICOLON_PATTERN + ")"
-                    + "|(?<STRING>" + STRING_PATTERN + ")"
-                    + "|(?<COMMENT>" + COMMENT_PATTERN + ")"
-                    + "|(?<INTEGER>" + INTEGER_PATTERN + ")"
-                    + "|(?<TYPE>" + TYPE_PATTERN + ")"
-    );
+    // Single-pass scanner shared by all highlighting calls
+    private final JavaLexer lexer = new JavaLexer(KEYWORDS, TYPES);
+
+    // Lexer states carried over from one paragraph into the next
+    public static final int STATE_DEFAULT = JavaLexer.STATE_DEFAULT;
+    public static final int STATE_BLOCK_COMMENT = JavaLexer.STATE_BLOCK_COMMENT;
+    public static final int STATE_TEXT_BLOCK = JavaLexer.STATE_TEXT_BLOCK;
 
     // Applies syntax highlighting to the given text
     public StyleSpans<Collection<String>> computeHighlighting(String text) {
-        Matcher matcher = PATTERN.matcher(text);
-        int lastKwEnd = 0;
+        HighlightEvent event = new HighlightEvent();
+        event.begin();
+        long start = System.nanoTime();
+
         StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+        computeHighlighting(text, 0, text.length(), STATE_DEFAULT, spansBuilder);
+        StyleSpans<Collection<String>> spans = spansBuilder.create();
 
-        while (matcher.find()) {
-            String styleClass = getString(matcher);
+        Metrics.record(Metrics.HIGHLIGHT_FULL, start);
+        event.phase = "full";
+        event.characters = text.length();
+        event.commit();
+        return spans;
+    }
 
-            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd); // unstyled text
-            spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start()); // styled match
-            lastKwEnd = matcher.end();
-        }
+    // Applies syntax highlighting to a single paragraph, starting in the given lexer state
+    // Returns the lexer state at the end of the paragraph
+    public int computeParagraphHighlighting(String paragraph, int state, StyleSpansBuilder<Collection<String>> spansBuilder) {
+        return computeHighlighting(paragraph, 0, paragraph.length(), state, spansBuilder);
+    }
+
+    // Applies syntax highlighting to text[start, end), starting in the given lexer state
+    // Returns the lexer state at end
+    public int computeHighlighting(String text, int start, int end, int state, StyleSpansBuilder<Collection<String>> spansBuilder) {
+        SpanCollector collector = new SpanCollector(spansBuilder, start);
+        int endState = lexer.lex(text, start, end, state, collector);
+        spansBuilder.add(Collections.emptyList(), end - collector.lastEnd); // remaining text
+        return endState;
+    }
+
+    // Same as computeHighlighting, also handing every token to sink
+    public int computeHighlighting(String text, int start, int end, int state, StyleSpansBuilder<Collection<String>> spansBuilder, JavaLexer.TokenSink sink) {
+        SpanCollector collector = new SpanCollector(spansBuilder, start);
+        int endState = lexer.lex(text, start, end, state, (token, tokenStart, tokenEnd) -> {
+            collector.token(token, tokenStart, tokenEnd);
+            sink.token(token, tokenStart, tokenEnd);
+        });
+        spansBuilder.add(Collections.emptyList(), end - collector.lastEnd); // remaining text
+        return endState;
+    }
+
+    // Lexer state at end after lexing text[start, end), without building any spans
+    public int scanState(String text, int start, int end, int state) {
+        return lexer.lex(text, start, end, state, (token, tokenStart, tokenEnd) -> { });
+    }
 
-        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd); // remaining text
-        return spansBuilder.create();
+    // Hands every token of text[start, end) to sink, returns the lexer state at end
+    public int scanTokens(String text, int start, int end, int state, JavaLexer.TokenSink sink) {
+        return lexer.lex(text, start, end, state, sink);
     }
 
-    // Determines the style class based on regex group
-    private static String getString(Matcher matcher) {
-        String styleClass =
-                matcher.group("KEYWORD") != null ? "keyword" :
-                matcher.group("PAREN") != null ? "paren" :
-                matcher.group("BRACE") != null ? "brace" :
-                matcher.group("BRACKET") != null ? "bracket" :
-                matcher.group("SEMICOLON") != null ? "semicolon" :
-                matcher.group("STRING") != null ? "string" :
-                matcher.group("COMMENT") != null ? "comment" :
-                matcher.group("INTEGER") != null ? "integer" :
-                matcher.group("TYPE") != null ? "type" : null;
-
-        assert styleClass != null; // Should always match one
-        return styleClass;
+    // Turns styled tokens into spans, leaving everything in between unstyled
+    private static class SpanCollector implements JavaLexer.TokenSink {
+        private final StyleSpansBuilder<Collection<String>> spansBuilder;
+        private int lastEnd;
+
+        SpanCollector(StyleSpansBuilder<Collection<String>> spansBuilder, int start) {
+            this.spansBuilder = spansBuilder;
+            this.lastEnd = start;
+        }
+
+        @Override
+        public void token(JavaLexer.Token token, int start, int end) {
+            if (!token.isStyled()) return;
+
+            spansBuilder.add(Collections.emptyList(), start - lastEnd); // unstyled text
+            spansBuilder.add(token.getStyles(), end - start); // styled token
+            lastEnd = end;
+        }
     }
 }
@@ -0,0 +1,241 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.FileContent;
+import org.explement.jde.model.FileState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Tab states by path, holding the text of background tabs within a memory budget
+// Over budget, clean tabs are dropped and reloaded from disk, dirty tabs are compressed, then spilled
+public class TabCache {
+
+    private final long memoryBudget; // Bytes of background tab text kept on the heap
+    private final FileIOService fileIOService;
+
+    // Least recently used first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryUsed;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long compressions;
+    private long spills;
+
+    public TabCache(long memoryBudget, FileIOService fileIOService) {
+        this.memoryBudget = memoryBudget;
+        this.fileIOService = fileIOService;
+    }
+
+    public FileState get(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? null : entry.state;
+    }
+
+    public void put(String path, FileState state) {
+        remove(path);
+        entries.put(path, new Entry(state));
+    }
+
+    public FileState remove(String path) {
+        Entry entry = entries.remove(path);
+        if (entry == null) return null;
+        release(entry);
+        return entry.state;
+    }
+
+    // Keeps the text of a tab going to the background
+    public void store(String path, String text) {
+        Entry entry = entries.get(path);
+        if (entry == null) return;
+
+        release(entry);
+        entry.text = text;
+        memoryUsed += charge(text);
+        enforceBudget();
+    }
+
+    // Text of a tab coming to the foreground, the editor holds it from now on
+    public String take(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) return "";
+
+        String text;
+        if (entry.text != null) {
+            hits++;
+            text = entry.text;
+        } else {
+            misses++;
+            text = restore(path, entry);
+        }
+        release(entry);
+        return text;
+    }
+
+    // Text of a background tab without taking it, null if only the file on disk has it
+    public String peek(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) return null;
+
+        try {
+            if (entry.text != null) return entry.text;
+            if (entry.compressed != null) return inflate(entry.compressed);
+            if (entry.spillFile != null) return inflate(Files.readAllBytes(entry.spillFile));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    // Paths of tabs with unsaved edits, without touching their recency
+    public List<String> dirtyPaths() {
+        List<String> paths = new ArrayList<>();
+        for (Map.Entry<String, Entry> tab : entries.entrySet()) {
+            if (tab.getValue().state.isDirty()) paths.add(tab.getKey());
+        }
+        return paths;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits, misses, evictions, compressions, spills, memoryUsed, memoryBudget);
+    }
+
+    private String restore(String path, Entry entry) {
+        try {
+            if (entry.compressed != null) return inflate(entry.compressed);
+            if (entry.spillFile != null) return inflate(Files.readAllBytes(entry.spillFile));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return "";
+        }
+
+        if (!new File(path).isAbsolute()) return ""; // Clean unnamed tab, nothing was ever typed
+
+        // Clean tab, the file on disk is the text, re-baseline in case it changed meanwhile
+        FileContent loaded = fileIOService.loadFile(new File(path));
+        entry.state.markSaved(loaded.text());
+        entry.state.setFormat(loaded.format());
+        return loaded.text();
+    }
+
+    // Shrinks least recently used tabs until under budget, cheapest first
+    private void enforceBudget() {
+        for (Map.Entry<String, Entry> tab : entries.entrySet()) {
+            if (memoryUsed <= memoryBudget) return;
+            Entry entry = tab.getValue();
+            if (entry.text != null && !entry.state.isDirty() && canReload(tab.getKey())) {
+                memoryUsed -= charge(entry.text);
+                entry.text = null;
+                evictions++;
+            }
+        }
+
+        for (Entry entry : entries.values()) {
+            if (memoryUsed <= memoryBudget) return;
+            if (entry.text != null) {
+                memoryUsed -= charge(entry.text);
+                entry.compressed = deflate(entry.text);
+                entry.text = null;
+                memoryUsed += entry.compressed.length;
+                compressions++;
+            }
+        }
+
+        for (Entry entry : entries.values()) {
+            if (memoryUsed <= memoryBudget) return;
+            if (entry.compressed != null) spill(entry);
+        }
+    }
+
+    private static boolean canReload(String path) {
+        File file = new File(path);
+        return !file.isAbsolute() || file.isFile();
+    }
+
+    private void spill(Entry entry) {
+        try {
+            Path file = Files.createTempFile("jde-tab", ".z");
+            file.toFile().deleteOnExit();
+            Files.write(file, entry.compressed);
+            memoryUsed -= entry.compressed.length;
+            entry.compressed = null;
+            entry.spillFile = file;
+            spills++;
+        } catch (IOException e) {
+            System.out.println(e.getMessage()); // Stays compressed in memory
+        }
+    }
+
+    // Forgets whatever is held for the entry
+    private void release(Entry entry) {
+        if (entry.text != null) memoryUsed -= charge(entry.text);
+        if (entry.compressed != null) memoryUsed -= entry.compressed.length;
+        if (entry.spillFile != null) {
+            try {
+                Files.deleteIfExists(entry.spillFile);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        entry.text = null;
+        entry.compressed = null;
+        entry.spillFile = null;
+    }
+
+    private static long charge(String text) {
+        return text.length() * 2L; // UTF-16 worst case
+    }
+
+    private static byte[] deflate(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory streams do not fail
+        } finally {
+            deflater.end(); // Frees native memory now, not on GC
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String inflate(byte[] compressed) throws IOException {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // At most one of text, compressed and spillFile is set, none while the tab is shown
+    private static class Entry {
+        private final FileState state;
+        private String text;
+        private byte[] compressed;
+        private Path spillFile;
+
+        Entry(FileState state) {
+            this.state = state;
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, long compressions, long spills, long memoryUsed, long memoryBudget) {
+        @Override
+        public String toString() {
+            return "hits " + hits + ", misses " + misses + ", evictions " + evictions
+                    + ", compressed " + compressions + ", spilled " + spills
+                    + ", " + memoryUsed / 1024 + " KB of " + memoryBudget / 1024 + " KB";
+        }
+    }
+}
@@ -0,0 +1,619 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.SearchHit;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+// Trigram index over the .java files under a project root, narrows a regex search to the files that can match
+// Built in parallel, persisted per root, and refreshed by re-reading only files whose size or mtime changed
+// Saved and externally changed files are re-indexed one by one, files changed unseen by the next sweep a search starts
+public class TrigramIndexService {
+
+    private static final int MAGIC = 0x4A445432; // "JDT2"
+    // Trigram keys are three 7-bit folded chars
+    private static final int TRIGRAM_SPACE = 1 << 21;
+    // Files indexed by one fork-join leaf
+    private static final int SPLIT_THRESHOLD = 32;
+    // Hit lines are cut to this many chars
+    private static final int MAX_HIT_LENGTH = 300;
+    // Inline flags turning on comments mode (whitespace and # comments are not literal) or Unicode case folding
+    // Least time between two sweeps for files changed without a save or watcher event, a sweep stats every file
+    private static final long SWEEP_INTERVAL_NANOS = 5_000_000_000L;
+    private static final Pattern UNLITERAL_FLAGS = Pattern.compile("\\(\\?[a-zA-Z]*[xuU]");
+
+    private final Path cacheDir;
+    private final FileIOService fileIOService;
+    // Builds run here one at a time, the parsing itself on the fork-join pool
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "project-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Per thread bitset over every trigram, marks the ones already seen in a file
+    private static final ThreadLocal<long[]> SEEN = ThreadLocal.withInitial(() -> new long[TRIGRAM_SPACE / 64]);
+
+    // Replaced as a whole after each build, searches never see one half done
+    private volatile Index index;
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL_NANOS);
+
+    public TrigramIndexService(Path cacheDir, FileIOService fileIOService) {
+        this.cacheDir = cacheDir;
+        this.fileIOService = fileIOService;
+    }
+
+    // Indexes root, reusing the index of unchanged files from memory or disk, completes with a summary
+    public CompletableFuture<String> open(Path root) {
+        return CompletableFuture.supplyAsync(() -> build(root.toAbsolutePath().normalize()), executor);
+    }
+
+    // Re-indexes one file after a save or a change on disk, ignored outside the indexed root
+    public void refresh(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        executor.execute(() -> update(List.of(normalized)));
+    }
+
+    public Path getRoot() {
+        Index current = index;
+        return current == null ? null : current.root();
+    }
+
+    // Lines matching regex in the indexed files, in file order, at most maxHits
+    // Throws PatternSyntaxException for an invalid regex
+    public List<SearchHit> search(String regex, int maxHits) {
+        Pattern pattern = Pattern.compile(regex);
+        Index current = index;
+        if (current == null) return List.of();
+
+        sweepLater(current.root());
+        int[] candidates = candidates(current, requiredTrigrams(regex));
+        IntStream ids = candidates == null ? IntStream.range(0, current.files().length) : IntStream.of(candidates);
+        return ids.parallel()
+                .mapToObj(id -> matches(current.root().resolve(current.files()[id].path()), pattern, maxHits))
+                .flatMap(List::stream)
+                .limit(maxHits)
+                .toList();
+    }
+
+    private String build(Path root) {
+        long start = System.nanoTime();
+
+        Index current = index;
+        Map<String, IndexedFile> previous = current != null && current.root().equals(root) ? byPath(current.files()) : load(root);
+        List<IndexedFile> scanned = scan(root);
+
+        IndexedFile[] files = new IndexedFile[scanned.size()];
+        AtomicInteger reread = new AtomicInteger();
+        ForkJoinPool.commonPool().invoke(new IndexTask(root, scanned, previous, files, reread, 0, files.length));
+
+        // Same files with the same sizes and mtimes keep the current index, as a sweep usually finds
+        boolean unchanged = reread.get() == 0 && files.length == previous.size();
+        if (!unchanged || current == null || !current.root().equals(root)) {
+            Index built = new Index(root, files, invert(files));
+            index = built;
+            if (!unchanged) persist(built);
+        }
+
+        return "Indexed " + files.length + " files under " + root + " (" + reread.get() + " read) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms";
+    }
+
+    // Rebuilds in the background, re-reading files changed by other programs, at most once per interval
+    private void sweepLater(Path root) {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) return;
+        executor.execute(() -> {
+            Index current = index;
+            if (current != null && current.root().equals(root)) build(root);
+        });
+    }
+
+    // Replaces the entries of the given files, adding new ones and dropping deleted ones
+    private void update(List<Path> changed) {
+        Index current = index;
+        if (current == null) return;
+
+        Map<String, IndexedFile> byPath = byPath(current.files());
+        boolean updated = false;
+        for (Path file : changed) {
+            if (!file.startsWith(current.root()) || !indexable(current.root(), file)) continue;
+            String path = current.root().relativize(file).toString();
+            IndexedFile known = byPath.get(path);
+            IndexedFile disk = stat(current.root(), file);
+            if (disk == null) {
+                updated |= byPath.remove(path) != null;
+            } else if (known == null || known.modified() != disk.modified() || known.size() != disk.size()) {
+                byPath.put(path, new IndexedFile(path, disk.modified(), disk.size(), trigrams(read(file))));
+                updated = true;
+            }
+        }
+        if (!updated || index != current) return; // Nothing new, or a full build replaced the index meanwhile
+
+        IndexedFile[] files = byPath.values().toArray(new IndexedFile[0]);
+        Arrays.sort(files, Comparator.comparing(IndexedFile::path));
+        index = new Index(current.root(), files, invert(files));
+    }
+
+    // Size and mtime of a regular file, null if it is gone
+    private static IndexedFile stat(Path root, Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.isRegularFile() ? new IndexedFile(root.relativize(file).toString(), attrs.lastModifiedTime().toMillis(), attrs.size(), null) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // A .java file outside hidden directories, the files scan() picks
+    private static boolean indexable(Path root, Path file) {
+        if (!file.getFileName().toString().endsWith(".java")) return false;
+        for (Path part : root.relativize(file.getParent())) {
+            if (part.toString().startsWith(".")) return false;
+        }
+        return true;
+    }
+
+    // Every .java file under root with its size and mtime, skipping hidden directories
+    private static List<IndexedFile> scan(Path root) {
+        List<IndexedFile> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    boolean hidden = !dir.equals(root) && dir.getFileName().toString().startsWith(".");
+                    return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                        files.add(new IndexedFile(root.relativize(file).toString(), attrs.lastModifiedTime().toMillis(), attrs.size(), null));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE; // Unreadable, leave it out
+                }
+            });
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        files.sort(Comparator.comparing(IndexedFile::path));
+        return files;
+    }
+
+    // Indexes a range of scanned files, splitting it in halves until it is small
+    private class IndexTask extends RecursiveAction {
+        private final Path root;
+        private final List<IndexedFile> scanned;
+        private final Map<String, IndexedFile> previous;
+        private final IndexedFile[] files;
+        private final AtomicInteger reread;
+        private final int from;
+        private final int to;
+
+        IndexTask(Path root, List<IndexedFile> scanned, Map<String, IndexedFile> previous, IndexedFile[] files, AtomicInteger reread, int from, int to) {
+            this.root = root;
+            this.scanned = scanned;
+            this.previous = previous;
+            this.files = files;
+            this.reread = reread;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IndexTask(root, scanned, previous, files, reread, from, middle),
+                        new IndexTask(root, scanned, previous, files, reread, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                IndexedFile file = scanned.get(i);
+                IndexedFile known = previous.get(file.path());
+                if (known != null && known.modified() == file.modified() && known.size() == file.size()) {
+                    files[i] = known;
+                } else {
+                    files[i] = new IndexedFile(file.path(), file.modified(), file.size(), trigrams(read(root.resolve(file.path()))));
+                    reread.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // File ids containing each trigram, ascending, as one array sliced by offsets[trigram]
+    private static Postings invert(IndexedFile[] files) {
+        int[] offsets = new int[TRIGRAM_SPACE + 1];
+        for (IndexedFile file : files) {
+            for (int trigram : file.trigrams()) {
+                offsets[trigram + 1]++;
+            }
+        }
+        for (int i = 0; i < TRIGRAM_SPACE; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] fileIds = new int[offsets[TRIGRAM_SPACE]];
+        int[] fill = Arrays.copyOf(offsets, TRIGRAM_SPACE);
+        for (int id = 0; id < files.length; id++) {
+            for (int trigram : files[id].trigrams()) {
+                fileIds[fill[trigram]++] = id;
+            }
+        }
+        return new Postings(offsets, fileIds);
+    }
+
+    // Files that can match any of the branches, null when nothing narrows the search
+    private static int[] candidates(Index index, int[][] branches) {
+        int[] result = new int[0];
+        for (int[] required : branches) {
+            if (required.length == 0) return null; // This branch could match anywhere
+            result = union(result, candidates(index.postings(), required));
+        }
+        return result;
+    }
+
+    // Files holding every required trigram
+    private static int[] candidates(Postings postings, int[] required) {
+        List<int[]> lists = new ArrayList<>();
+        for (int trigram : required) {
+            lists.add(Arrays.copyOfRange(postings.fileIds(), postings.offsets()[trigram], postings.offsets()[trigram + 1]));
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length)); // Shortest first keeps every step small
+
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) result[count++] = a[i++];
+            else if (i == a.length || b[j] < a[i]) result[count++] = b[j++];
+            else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Per top-level alternative, trigrams every match of it must contain
+    static int[][] requiredTrigrams(String regex) {
+        if (regex.contains("\\Q")) return new int[][]{new int[0]}; // Quoted text may hold a '|'
+        if (UNLITERAL_FLAGS.matcher(regex).find()) return new int[][]{new int[0]}; // Comments mode drops whitespace and # comments, Unicode case goes beyond fold()
+
+        List<String> branches = new ArrayList<>();
+        int depth = 0;
+        int branchStart = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '[') i = skipClass(regex, i);
+            else if (c == '(') depth++;
+            else if (c == ')') depth = Math.max(0, depth - 1);
+            else if (c == '|' && depth == 0) {
+                branches.add(regex.substring(branchStart, i));
+                branchStart = i + 1;
+            }
+        }
+        branches.add(regex.substring(branchStart));
+
+        int[][] required = new int[branches.size()][];
+        for (int i = 0; i < required.length; i++) {
+            required[i] = branchTrigrams(branches.get(i));
+        }
+        return required;
+    }
+
+    // Trigrams of the literal runs every match of one alternative must contain, a conservative reading:
+    // groups and classes are skipped, a char followed by *, ? or {} is optional
+    private static int[] branchTrigrams(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(++i);
+                if (depth == 0 && !Character.isLetterOrDigit(escaped)) {
+                    run.append(escaped); // Escaped punctuation is literal
+                } else {
+                    flush(run, literals); // \w, \d, \b and the like
+                    i = skipEscape(regex, i);
+                }
+            } else if (c == '*' || c == '?' || c == '{') {
+                if (run.length() > 0) run.setLength(run.length() - 1);
+                flush(run, literals);
+                if (c == '{') i = Math.max(i, regex.indexOf('}', i));
+            } else if (c == '[') {
+                flush(run, literals);
+                i = skipClass(regex, i);
+            } else if (c == '(') {
+                flush(run, literals);
+                depth++;
+            } else if (c == ')') {
+                flush(run, literals);
+                depth = Math.max(0, depth - 1);
+            } else if (c == '+' || c == '.' || c == '^' || c == '$' || depth > 0) {
+                flush(run, literals);
+            } else {
+                run.append(c);
+            }
+        }
+        flush(run, literals);
+
+        StringBuilder text = new StringBuilder();
+        for (String literal : literals) {
+            text.append(literal).append('\n'); // Trigrams never span two literals, see trigrams()
+        }
+        return trigrams(text.toString());
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) literals.add(run.toString());
+        run.setLength(0);
+    }
+
+    // Index of the last char of the escape whose letter or digit is at i, \x41, \u00e9 and \0101 are one char
+    private static int skipEscape(String regex, int i) {
+        char escaped = regex.charAt(i);
+        int end = switch (escaped) {
+            case 'x' -> i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? regex.indexOf('}', i) : i + 2;
+            case 'u' -> i + 4;
+            case '0' -> {
+                int digits = i + 1 < regex.length() && regex.charAt(i + 1) <= '3' ? 3 : 2;
+                int last = i;
+                while (last - i < digits && last + 1 < regex.length() && regex.charAt(last + 1) >= '0' && regex.charAt(last + 1) <= '7') last++;
+                yield last;
+            }
+            case 'c' -> i + 1; // Control char
+            case 'p', 'P', 'N' -> i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? regex.indexOf('}', i) : i + 1;
+            case 'k' -> regex.indexOf('>', i);
+            default -> {
+                int last = i; // A back reference takes every following digit
+                while (Character.isDigit(escaped) && last + 1 < regex.length() && Character.isDigit(regex.charAt(last + 1))) last++;
+                yield last;
+            }
+        };
+        return end < 0 ? regex.length() - 1 : Math.min(end, regex.length() - 1);
+    }
+
+    private static int skipClass(String regex, int open) { // Index of the ']' closing the class opened at open
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') i++;
+        if (i < regex.length() && regex.charAt(i) == ']') i++; // A leading ']' is literal
+        while (i < regex.length() && regex.charAt(i) != ']') {
+            if (regex.charAt(i) == '\\') i++;
+            i++;
+        }
+        return i;
+    }
+
+    // Sorted, distinct trigrams of the text, case folded, none spanning a line break
+    // Duplicates are dropped through a bitset, so only the distinct few thousand get sorted
+    static int[] trigrams(String text) {
+        long[] seen = SEEN.get();
+        int[] keys = new int[256];
+        int count = 0;
+        for (int i = 0; i + 2 < text.length(); i++) {
+            char a = text.charAt(i);
+            char b = text.charAt(i + 1);
+            char c = text.charAt(i + 2);
+            if (a == '\n' || b == '\n' || c == '\n') continue;
+
+            int key = fold(a) << 14 | fold(b) << 7 | fold(c);
+            long bit = 1L << key;
+            if ((seen[key >>> 6] & bit) != 0) continue;
+            seen[key >>> 6] |= bit;
+            if (count == keys.length) keys = Arrays.copyOf(keys, count * 2);
+            keys[count++] = key;
+        }
+
+        for (int i = 0; i < count; i++) {
+            seen[keys[i] >>> 6] = 0; // Clear only the words this text touched
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // ASCII lowercase in 7 bits, other chars collide, which only adds candidates the regex then rejects
+    private static int fold(char c) {
+        return (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c) & 0x7F;
+    }
+
+    private List<SearchHit> matches(Path file, Pattern pattern, int maxHits) {
+        String text = read(file);
+        List<SearchHit> hits = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+
+        int line = 1;
+        int counted = 0;
+        int from = 0;
+        while (from <= text.length() && hits.size() < maxHits && matcher.find(from)) {
+            int start = matcher.start();
+            for (int i = counted; i < start; i++) {
+                if (text.charAt(i) == '\n') line++;
+            }
+            counted = start;
+
+            int lineStart = text.lastIndexOf('\n', start - 1) + 1;
+            int lineEnd = text.indexOf('\n', start);
+            if (lineEnd < 0) lineEnd = text.length();
+            hits.add(new SearchHit(file, line, text.substring(lineStart, Math.min(lineEnd, lineStart + MAX_HIT_LENGTH))));
+            from = lineEnd + 1; // One hit per line
+        }
+        return hits;
+    }
+
+    private String read(Path file) {
+        try {
+            return fileIOService.decode(ByteBuffer.wrap(Files.readAllBytes(file))).text();
+        } catch (IOException e) {
+            return ""; // Deleted since the scan, matches nothing
+        }
+    }
+
+    private Path cacheFile(Path root) {
+        return cacheDir.resolve(Integer.toHexString(root.toString().hashCode()) + ".trigrams");
+    }
+
+    // Per file: path, mtime, size and its trigrams as ascending varint deltas
+    private void persist(Index index) {
+        try {
+            Files.createDirectories(cacheDir);
+            Path temp = Files.createTempFile(cacheDir, "index", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                writeString(out, index.root().toString());
+                out.writeInt(index.files().length);
+                for (IndexedFile file : index.files()) {
+                    writeString(out, file.path());
+                    out.writeLong(file.modified());
+                    out.writeLong(file.size());
+                    out.writeInt(file.trigrams().length);
+                    int last = 0;
+                    for (int trigram : file.trigrams()) {
+                        writeVarint(out, trigram - last);
+                        last = trigram;
+                    }
+                }
+            }
+            Files.move(temp, cacheFile(index.root()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // Files indexed in an earlier session, empty if there is no usable index for root
+    private Map<String, IndexedFile> load(Path root) {
+        Path file = cacheFile(root);
+        if (!Files.isRegularFile(file)) return Map.of();
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file)); // One read, then parsed in memory
+            if (in.getInt() != MAGIC || !readString(in).equals(root.toString())) return Map.of();
+
+            IndexedFile[] files = new IndexedFile[in.getInt()];
+            for (int i = 0; i < files.length; i++) {
+                String path = readString(in);
+                long modified = in.getLong();
+                long size = in.getLong();
+                int[] trigrams = new int[in.getInt()];
+                int last = 0;
+                for (int j = 0; j < trigrams.length; j++) {
+                    last += readVarint(in);
+                    trigrams[j] = last;
+                }
+                files[i] = new IndexedFile(path, modified, size, trigrams);
+            }
+            return byPath(files);
+        } catch (IOException | RuntimeException e) {
+            System.out.println(e.getMessage()); // Corrupt or partial, index from scratch
+            return Map.of();
+        }
+    }
+
+    private static Map<String, IndexedFile> byPath(IndexedFile[] files) {
+        Map<String, IndexedFile> byPath = new HashMap<>(files.length * 2);
+        for (IndexedFile file : files) {
+            byPath.put(file.path(), file);
+        }
+        return byPath;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed index");
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // path is relative to the root, trigrams is null until the file is read
+    private record IndexedFile(String path, long modified, long size, int[] trigrams) {
+    }
+
+    private record Index(Path root, IndexedFile[] files, Postings postings) {
+    }
+
+    private record Postings(int[] offsets, int[] fileIds) {
+    }
+}
@@ -22,4 +22,14 @@ public class AlertUtils {
 
         return alert.showAndWait();
     }
+
+    public static void showError(String title, String header, String content) { // Non-blocking, safe to show from callbacks
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+
+        alert.setTitle(title);
+        alert.setHeaderText(header);
+        alert.setContentText(content);
+
+        alert.show();
+    }
 }
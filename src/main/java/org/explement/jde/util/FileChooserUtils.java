@@ -1,5 +1,6 @@
 package org.explement.jde.util;
 
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 
 import java.io.File;
@@ -47,4 +48,11 @@ public class FileChooserUtils {
 
         return fileChooser;
     }
+
+    public static DirectoryChooser createProjectDirectoryChooser() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Load Folder");
+        directoryChooser.setInitialDirectory(new File(System.getProperty("user.home")));
+        return directoryChooser;
+    }
 }
@@ -0,0 +1,81 @@
+package org.explement.jde.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MergeUtils {
+
+    // Past this many cells of the line table, the whole differing middle becomes one conflict
+    private static final long MAX_TABLE_CELLS = 4_000_000;
+
+    private MergeUtils(){} // Create private constructor
+
+    // Keeps the lines both texts share once, every stretch where they differ becomes a conflict block
+    public static String mergeWithMarkers(String mine, String theirs, String mineLabel, String theirsLabel) {
+        String[] a = mine.split("\n", -1);
+        String[] b = theirs.split("\n", -1);
+
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) prefix++;
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) suffix++;
+
+        List<String> merged = new ArrayList<>(Arrays.asList(a).subList(0, prefix));
+        String[] aMiddle = Arrays.copyOfRange(a, prefix, a.length - suffix);
+        String[] bMiddle = Arrays.copyOfRange(b, prefix, b.length - suffix);
+
+        if ((long) aMiddle.length * bMiddle.length > MAX_TABLE_CELLS) {
+            addConflict(merged, new ArrayList<>(Arrays.asList(aMiddle)), new ArrayList<>(Arrays.asList(bMiddle)), mineLabel, theirsLabel);
+        } else {
+            mergeMiddle(merged, aMiddle, bMiddle, mineLabel, theirsLabel);
+        }
+
+        merged.addAll(Arrays.asList(a).subList(a.length - suffix, a.length));
+        return String.join("\n", merged);
+    }
+
+    // Walks a longest common subsequence of lines, collecting what each side has in between
+    private static void mergeMiddle(List<String> merged, String[] a, String[] b, String mineLabel, String theirsLabel) {
+        int width = b.length + 1;
+        int[] common = new int[(a.length + 1) * width]; // common[i][j]: LCS length of a[i..] and b[j..]
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                common[i * width + j] = a[i].equals(b[j])
+                        ? common[(i + 1) * width + j + 1] + 1
+                        : Math.max(common[(i + 1) * width + j], common[i * width + j + 1]);
+            }
+        }
+
+        List<String> mineOnly = new ArrayList<>();
+        List<String> theirsOnly = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (i < a.length && j < b.length && a[i].equals(b[j])) {
+                addConflict(merged, mineOnly, theirsOnly, mineLabel, theirsLabel);
+                merged.add(a[i]);
+                i++;
+                j++;
+            } else if (j == b.length || (i < a.length && common[(i + 1) * width + j] >= common[i * width + j + 1])) {
+                mineOnly.add(a[i++]);
+            } else {
+                theirsOnly.add(b[j++]);
+            }
+        }
+        addConflict(merged, mineOnly, theirsOnly, mineLabel, theirsLabel);
+    }
+
+    private static void addConflict(List<String> merged, List<String> mine, List<String> theirs, String mineLabel, String theirsLabel) {
+        if (mine.isEmpty() && theirs.isEmpty()) return;
+
+        merged.add("<<<<<<< " + mineLabel);
+        merged.addAll(mine);
+        merged.add("=======");
+        merged.addAll(theirs);
+        merged.add(">>>>>>> " + theirsLabel);
+        mine.clear();
+        theirs.clear();
+    }
+}
@@ -0,0 +1,178 @@
+package org.explement.jde.worker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Entry point of the persistent execution worker JVM, runs one program per request
+public class WorkerMain {
+
+    // Recycle after this many runs, so leaked classes and statics never pile up
+    private static final int MAX_RUNS = 50;
+
+    private static DataOutputStream protocolOut;
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream protocolIn = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        protocolOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+        // The pipes carry the protocol, user programs get framed streams and an empty System.in
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FrameOutputStream(WorkerProtocol.FRAME_OUT)), true, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new BufferedOutputStream(new FrameOutputStream(WorkerProtocol.FRAME_ERR)), true, StandardCharsets.UTF_8);
+
+        for (int runs = 1; ; runs++) {
+            Map<String, byte[]> classes = new HashMap<>();
+            String mainClass;
+            try {
+                int classCount = protocolIn.readInt();
+                for (int i = 0; i < classCount; i++) {
+                    String name = protocolIn.readUTF();
+                    byte[] bytes = new byte[protocolIn.readInt()];
+                    protocolIn.readFully(bytes);
+                    classes.put(name, bytes);
+                }
+                mainClass = protocolIn.readUTF();
+            } catch (EOFException e) {
+                return; // Editor closed the pipe
+            }
+
+            System.setOut(out);
+            System.setErr(err);
+            System.setIn(new ByteArrayInputStream(new byte[0]));
+
+            Set<Thread> threadsBefore = Thread.getAllStackTraces().keySet();
+            int propertiesBefore = System.getProperties().hashCode();
+
+            boolean failed = !runMain(classes, mainClass, err);
+            boolean leakedThreads = joinUserThreads(threadsBefore);
+
+            out.flush();
+            err.flush();
+
+            // Leaked threads or changed global state would bleed into the next program
+            boolean recycle = leakedThreads || runs >= MAX_RUNS || System.getProperties().hashCode() != propertiesBefore;
+
+            synchronized (protocolOut) {
+                protocolOut.writeByte(WorkerProtocol.FRAME_DONE);
+                protocolOut.writeBoolean(failed);
+                protocolOut.writeBoolean(recycle);
+                protocolOut.flush();
+            }
+
+            if (recycle) return;
+        }
+    }
+
+    // Loads the classes in a throwaway class loader and invokes main, returns false if it threw
+    private static boolean runMain(Map<String, byte[]> classes, String mainClass, PrintStream err) {
+        try {
+            ClassLoader loader = new ByteClassLoader(classes);
+            Method main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+            main.invoke(null, (Object) new String[0]);
+            return true;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            cause.setStackTrace(trimWorkerFrames(cause.getStackTrace()));
+            cause.printStackTrace(err);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            err.println("Error: Could not run " + mainClass + ": " + e);
+        }
+        return false;
+    }
+
+    // Drops the reflection and worker frames below the program's main, like a plain java launch
+    private static StackTraceElement[] trimWorkerFrames(StackTraceElement[] trace) {
+        int keep = trace.length;
+        for (int i = 0; i < trace.length; i++) {
+            if (trace[i].getClassName().equals(WorkerMain.class.getName())) {
+                keep = i;
+                break;
+            }
+        }
+        while (keep > 0 && (trace[keep - 1].getClassName().startsWith("java.lang.reflect.")
+                || trace[keep - 1].getClassName().startsWith("jdk.internal.reflect."))) {
+            keep--;
+        }
+        return Arrays.copyOf(trace, keep);
+    }
+
+    // Waits for non-daemon threads the program started, like a JVM would before exiting
+    // Returns true if any thread the program started is still alive afterwards
+    private static boolean joinUserThreads(Set<Thread> threadsBefore) {
+        Set<Thread> started = new HashSet<>(Thread.getAllStackTraces().keySet());
+        started.removeAll(threadsBefore);
+
+        for (Thread thread : started) {
+            if (thread.isDaemon()) continue;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+
+        for (Thread thread : started) {
+            if (thread.isAlive()) return true;
+        }
+        return false;
+    }
+
+    // Defines the program's classes on top of the platform class loader, hiding the worker's own
+    private static class ByteClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        ByteClassLoader(Map<String, byte[]> classes) {
+            super("jde-run", ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // Wraps everything written to it in frames of the given type
+    private static class FrameOutputStream extends OutputStream {
+        private final byte type;
+
+        FrameOutputStream(byte type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            synchronized (protocolOut) {
+                protocolOut.writeByte(type);
+                protocolOut.writeInt(length);
+                protocolOut.write(bytes, offset, length);
+                protocolOut.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.explement.jde.worker;
+
+public class WorkerProtocol {
+
+    private WorkerProtocol() {} // Create private constructor
+
+    // Frames sent from the worker to the editor, each starts with one of these bytes
+    public static final byte FRAME_OUT = 1; // int length, bytes written to System.out
+    public static final byte FRAME_ERR = 2; // int length, bytes written to System.err
+    public static final byte FRAME_DONE = 3; // boolean failed, boolean recycle
+
+    // Requests sent from the editor: int class count, (UTF name, int length, bytes) per class, UTF main class
+}
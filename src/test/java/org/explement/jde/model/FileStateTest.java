@@ -0,0 +1,107 @@
+package org.explement.jde.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileStateTest {
+
+    // Live text of a tab, edited the way the CodeArea reports it to FileState
+    private static class Buffer {
+        private final StringBuilder text;
+        private final FileState state;
+
+        Buffer(String saved) {
+            text = new StringBuilder(saved);
+            state = new FileState(saved);
+        }
+
+        void replace(int start, int end, String inserted) {
+            text.replace(start, end, inserted);
+            state.edit(start, inserted.length(), text.length(), text::substring);
+        }
+    }
+
+
+    @Test
+    void typingMakesDirtyAndUndoingMakesClean() {
+        Buffer buffer = new Buffer("class A {}");
+        assertFalse(buffer.state.isDirty());
+
+        buffer.replace(9, 9, "int x;");
+        assertTrue(buffer.state.isDirty());
+        buffer.replace(9, 15, "");
+        assertFalse(buffer.state.isDirty());
+    }
+
+    @Test
+    void sameLengthDifferentTextStaysDirty() {
+        Buffer buffer = new Buffer("abcdef");
+        buffer.replace(2, 3, "X");
+        assertTrue(buffer.state.isDirty());
+        buffer.replace(2, 3, "c");
+        assertFalse(buffer.state.isDirty());
+    }
+
+    @Test
+    void editsAcrossBlockBoundariesOfALongText() {
+        String saved = "0123456789abcdef".repeat(1000); // Several 4 KB blocks
+        Buffer buffer = new Buffer(saved);
+
+        buffer.replace(4090, 4100, "");
+        buffer.replace(10_000, 10_000, "0123456789");
+        assertTrue(buffer.state.isDirty()); // Same length, but the text moved
+
+        buffer.replace(10_000, 10_010, "");
+        buffer.replace(4090, 4090, saved.substring(4090, 4100));
+        assertFalse(buffer.state.isDirty());
+    }
+
+    @Test
+    void editAtTheVeryEnd() {
+        Buffer buffer = new Buffer("x".repeat(4096));
+        buffer.replace(4096, 4096, "y");
+        assertTrue(buffer.state.isDirty());
+        buffer.replace(4096, 4097, "");
+        assertFalse(buffer.state.isDirty());
+    }
+
+    @Test
+    void markSavedMakesCurrentTextTheBaseline() {
+        Buffer buffer = new Buffer("one");
+        buffer.replace(3, 3, " two");
+        buffer.state.markSaved(buffer.text);
+        assertFalse(buffer.state.isDirty());
+
+        buffer.replace(3, 7, "");
+        assertTrue(buffer.state.isDirty()); // Back to the old saved text, not the new one
+        buffer.replace(3, 3, " two");
+        assertFalse(buffer.state.isDirty());
+    }
+
+    @Test
+    void editsWhileSavingStayDirtyAgainstTheSavedText() {
+        Buffer buffer = new Buffer("one");
+        buffer.replace(3, 3, " two");
+        String saving = buffer.text.toString();
+        long version = buffer.state.getEditVersion();
+
+        buffer.replace(7, 7, " three"); // Typed before the write landed
+        buffer.state.markSaved(saving, version);
+        assertTrue(buffer.state.isDirty());
+
+        buffer.replace(7, 13, ""); // Undone back to what is on disk
+        assertFalse(buffer.state.isDirty());
+        buffer.replace(3, 7, "");
+        assertTrue(buffer.state.isDirty());
+    }
+
+    @Test
+    void saveWithoutNewerEditsIsClean() {
+        Buffer buffer = new Buffer("one");
+        buffer.replace(3, 3, "!");
+        buffer.state.markSaved(buffer.text.toString(), buffer.state.getEditVersion());
+        assertFalse(buffer.state.isDirty());
+    }
+}
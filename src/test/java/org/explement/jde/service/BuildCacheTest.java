@@ -0,0 +1,41 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.CompilationResult;
+import org.explement.jde.model.CompileDiagnostic;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BuildCacheTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void spilledResultKeepsClassesAndDiagnostics() {
+        CompileDiagnostic warning = new CompileDiagnostic(3, 5, 40, 52, "unchecked call ✓", CompileDiagnostic.Kind.WARNING);
+        String key = BuildCache.key("Main", "class Main {}", List.of("-g"));
+        new BuildCache(spillDir).put(key, new CompilationResult(true, List.of(warning), Map.of("Main", new byte[] { 1, 2, 3 })));
+
+        CompilationResult cached = new BuildCache(spillDir).get(key); // Fresh cache, read from disk
+        assertEquals(List.of(warning), cached.diagnostics());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, cached.classes().get("Main"));
+    }
+
+    @Test
+    void keyDependsOnSourceAndOptions() {
+        String key = BuildCache.key("Main", "class Main {}", List.of());
+        assertEquals(key, BuildCache.key("Main", "class Main {}", List.of()));
+        assertNotEquals(key, BuildCache.key("Main", "class Main { }", List.of()));
+        assertNotEquals(key, BuildCache.key("Main", "class Main {}", List.of("-g")));
+        assertNull(new BuildCache(spillDir).get(key));
+    }
+}
@@ -0,0 +1,148 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.FileContent;
+import org.explement.jde.model.FileFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileIOServiceTest {
+
+    private final FileIOService fileIOService = new FileIOService();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void saveKeepsPermissions() throws IOException {
+        assumeTrue(Files.getFileStore(directory).supportsFileAttributeView("posix"));
+        Path file = Files.writeString(directory.resolve("Run.sh"), "old");
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rwxr-x---"));
+
+        fileIOService.writeAtomically(file, "new", FileFormat.DEFAULT);
+
+        assertEquals("new", Files.readString(file));
+        assertEquals("rwxr-x---", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+    @Test
+    void saveThroughSymlinkReplacesTheLinkedFile() throws IOException {
+        Path real = Files.writeString(directory.resolve("Real.java"), "old");
+        Path link;
+        try {
+            link = Files.createSymbolicLink(directory.resolve("Link.java"), real.getFileName());
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "No symlinks here");
+            return;
+        }
+
+        fileIOService.writeAtomically(link, "new", FileFormat.DEFAULT);
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new", Files.readString(real));
+    }
+
+    @Test
+    void saveThroughDanglingSymlinkCreatesItsTarget() throws IOException {
+        Path link;
+        try {
+            link = Files.createSymbolicLink(directory.resolve("Link.java"), Path.of("New.java"));
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "No symlinks here");
+            return;
+        }
+
+        fileIOService.writeAtomically(link, "text", FileFormat.DEFAULT);
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("text", Files.readString(directory.resolve("New.java")));
+    }
+
+    @Test
+    void saveLeavesNoTempFiles() throws IOException {
+        Path file = directory.resolve("A.java");
+        fileIOService.writeAtomically(file, "a", FileFormat.DEFAULT);
+        fileIOService.writeAtomically(file, "b", FileFormat.DEFAULT);
+
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void utf8BomAndCrlfRoundTrip() throws IOException {
+        byte[] bytes = concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, "class A {\r\n  // é\r\n}\r\n".getBytes(StandardCharsets.UTF_8));
+
+        FileContent content = roundTrip(bytes);
+
+        assertEquals("class A {\n  // é\n}\n", content.text());
+        assertEquals(new FileFormat(StandardCharsets.UTF_8, true, "\r\n"), content.format());
+    }
+
+    @Test
+    void utf16BomRoundTrip() throws IOException {
+        byte[] bytes = concat(new byte[] { (byte) 0xFF, (byte) 0xFE }, "a\nβ\n".getBytes(StandardCharsets.UTF_16LE));
+
+        FileContent content = roundTrip(bytes);
+
+        assertEquals("a\nβ\n", content.text());
+        assertEquals(new FileFormat(StandardCharsets.UTF_16LE, true, "\n"), content.format());
+    }
+
+    @Test
+    void latin1RoundTrip() throws IOException {
+        byte[] bytes = "// caf\u00e9\rx\r".getBytes(StandardCharsets.ISO_8859_1);
+
+        FileContent content = roundTrip(bytes);
+
+        assertEquals("// café\nx\n", content.text());
+        assertEquals(new FileFormat(StandardCharsets.ISO_8859_1, false, "\r"), content.format());
+    }
+
+    @Test
+    void bomBeforeLatin1IsKeptAsText() throws IOException {
+        byte[] bytes = concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, "caf\u00e9".getBytes(StandardCharsets.ISO_8859_1));
+
+        FileContent content = roundTrip(bytes);
+
+        assertEquals("\u00ef\u00bb\u00bfcaf\u00e9", content.text());
+        assertEquals(StandardCharsets.ISO_8859_1, content.format().charset());
+        assertFalse(content.format().bom());
+    }
+
+    @Test
+    void largeFileLoadsAndIsReplaced() throws IOException {
+        byte[] bytes = "x".repeat(3 * 1024 * 1024).getBytes(StandardCharsets.UTF_8);
+
+        FileContent content = roundTrip(bytes);
+
+        assertEquals(bytes.length, content.text().length());
+    }
+
+    // Loads the bytes from a file and saves them back in the detected format, the file must come out unchanged
+    private FileContent roundTrip(byte[] bytes) throws IOException {
+        Path file = Files.write(directory.resolve("RoundTrip.java"), bytes);
+        FileContent content = fileIOService.loadFile(file.toFile());
+        fileIOService.writeAtomically(file, content.text(), content.format());
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+        return content;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
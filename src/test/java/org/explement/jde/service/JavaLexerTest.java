@@ -0,0 +1,97 @@
+package org.explement.jde.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JavaLexerTest {
+
+    private final JavaLexer lexer = new JavaLexer(new String[] { "class", "int", "return" }, new String[] { "String" });
+
+    // Tokens as KIND:text, whitespace dropped
+    private List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        lexer.lex(text, 0, text.length(), JavaLexer.STATE_DEFAULT, (token, start, end) -> tokens.add(token + ":" + text.substring(start, end)));
+        return tokens;
+    }
+
+    @Test
+    void wordsAreKeywordsTypesOrIdentifiers() {
+        assertEquals(List.of("KEYWORD:int", "IDENTIFIER:count", "OPERATOR:=", "NUMBER:0", "SEMICOLON:;"), tokens("int count = 0;"));
+        assertEquals(List.of("TYPE:String", "IDENTIFIER:Strings"), tokens("String Strings"));
+    }
+
+    @Test
+    void numberLiterals() {
+        assertEquals(List.of("NUMBER:0x1F_FFL"), tokens("0x1F_FFL"));
+        assertEquals(List.of("NUMBER:0b1010"), tokens("0b1010"));
+        assertEquals(List.of("NUMBER:1_000.5e-3d"), tokens("1_000.5e-3d"));
+        assertEquals(List.of("NUMBER:.5f"), tokens(".5f"));
+        assertEquals(List.of("NUMBER:0x1.8p3"), tokens("0x1.8p3"));
+    }
+
+    @Test
+    void fractionEndingInSuffixOrExponent() {
+        assertEquals(List.of("NUMBER:3.f"), tokens("3.f"));
+        assertEquals(List.of("NUMBER:3.D", "SEMICOLON:;"), tokens("3.D;"));
+        assertEquals(List.of("NUMBER:1.e5"), tokens("1.e5"));
+        assertEquals(List.of("NUMBER:3", "OPERATOR:.", "IDENTIFIER:foo"), tokens("3.foo")); // Member access
+    }
+
+    @Test
+    void secondDotStartsNewNumber() {
+        assertEquals(List.of("NUMBER:1.", "NUMBER:.2"), tokens("1..2"));
+        assertEquals(List.of("NUMBER:1e5", "NUMBER:.5"), tokens("1e5.5"));
+    }
+
+    @Test
+    void memberAccessAfterIndexIsNotANumber() {
+        assertEquals(List.of("IDENTIFIER:a", "BRACKET:[", "NUMBER:0", "BRACKET:]", "OPERATOR:.", "IDENTIFIER:length"), tokens("a[0].length"));
+    }
+
+    @Test
+    void stringsCharsAndEscapes() {
+        assertEquals(List.of("STRING:\"a\\\"b\"", "SEMICOLON:;"), tokens("\"a\\\"b\";"));
+        assertEquals(List.of("CHAR:'\\''"), tokens("'\\''"));
+        assertEquals(List.of("STRING:\"open"), tokens("\"open"));
+    }
+
+    @Test
+    void annotationsAndAtInterface() {
+        assertEquals(List.of("ANNOTATION:@Override"), tokens("@Override"));
+        assertEquals(List.of("KEYWORD:@interface", "IDENTIFIER:Marker"), tokens("@interface Marker"));
+    }
+
+    @Test
+    void commentsAndBrackets() {
+        assertEquals(List.of("PAREN:(", "COMMENT:// ) {", "PAREN:)"), tokens("(// ) {\n)"));
+        assertEquals(List.of("BRACE:{", "COMMENT:/* } */", "BRACE:}"), tokens("{/* } */}"));
+    }
+
+    @Test
+    void blockCommentCarriesOverParagraphs() {
+        String first = "int a; /* open";
+        assertEquals(JavaLexer.STATE_BLOCK_COMMENT, lexer.lex(first, 0, first.length(), JavaLexer.STATE_DEFAULT, (token, start, end) -> { }));
+
+        String second = "still */ int b;";
+        List<String> tokens = new ArrayList<>();
+        int state = lexer.lex(second, 0, second.length(), JavaLexer.STATE_BLOCK_COMMENT, (token, start, end) -> tokens.add(token + ":" + second.substring(start, end)));
+        assertEquals(JavaLexer.STATE_DEFAULT, state);
+        assertEquals(List.of("COMMENT:still */", "KEYWORD:int", "IDENTIFIER:b", "SEMICOLON:;"), tokens);
+    }
+
+    @Test
+    void textBlockCarriesOverParagraphs() {
+        String first = "String s = \"\"\"";
+        assertEquals(JavaLexer.STATE_TEXT_BLOCK, lexer.lex(first, 0, first.length(), JavaLexer.STATE_DEFAULT, (token, start, end) -> { }));
+
+        String second = "  \\\"\"\" still \"\"\";";
+        List<String> tokens = new ArrayList<>();
+        int state = lexer.lex(second, 0, second.length(), JavaLexer.STATE_TEXT_BLOCK, (token, start, end) -> tokens.add(token + ":" + second.substring(start, end)));
+        assertEquals(JavaLexer.STATE_DEFAULT, state);
+        assertEquals(List.of("TEXT_BLOCK:  \\\"\"\" still \"\"\"", "SEMICOLON:;"), tokens);
+    }
+}
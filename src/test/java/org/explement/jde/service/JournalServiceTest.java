@@ -0,0 +1,186 @@
+package org.explement.jde.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void editsReplayAfterRestart() throws IOException {
+        JournalService journal = new JournalService(directory.resolve("session"));
+        Buffer buffer = new Buffer("A.java", "class A {}");
+        buffer.replace(journal, 9, 0, " int x; ");
+        buffer.replace(journal, 10, 3, "long");
+        buffer.replace(journal, 0, 0, "// é\n");
+        journal.flush();
+
+        List<JournalService.RecoveredTab> recovered = restart(directory.resolve("session")).recover();
+        assertEquals(1, recovered.size());
+        assertEquals("A.java", recovered.getFirst().path());
+        assertEquals(buffer.text.toString(), recovered.getFirst().text());
+    }
+
+    @Test
+    void tornTailIsIgnored() throws IOException {
+        JournalService journal = new JournalService(directory.resolve("session"));
+        Buffer buffer = new Buffer("A.java", "abc");
+        buffer.replace(journal, 3, 0, "def");
+        journal.flush();
+        Files.write(journalFile(directory.resolve("session")), new byte[] { 2, 0, 0, 0, 1, 0, 0 }, StandardOpenOption.APPEND); // Half an edit record
+
+        List<JournalService.RecoveredTab> recovered = restart(directory.resolve("session")).recover();
+        assertEquals("abcdef", recovered.getFirst().text());
+    }
+
+    @Test
+    void adoptedJournalDropsTornTailAndKeepsRecording() throws IOException {
+        JournalService first = new JournalService(directory.resolve("first"));
+        Buffer buffer = new Buffer("A.java", "abc");
+        buffer.replace(first, 3, 0, "def");
+        first.flush();
+        Files.write(journalFile(directory.resolve("first")), new byte[] { 2, 0, 0 }, StandardOpenOption.APPEND);
+
+        JournalService second = restart(directory.resolve("first"));
+        JournalService.RecoveredTab tab = second.recover().getFirst();
+        second.adopt(tab, "B.java");
+        buffer.path = "B.java";
+        buffer.replace(second, 0, 1, "x");
+        second.flush();
+
+        JournalService.RecoveredTab again = restart(directory.resolve("first-restarted")).recover().getFirst();
+        assertEquals("B.java", again.path());
+        assertEquals("xbcdef", again.text());
+    }
+
+    @Test
+    void renameRecordsNewPath() throws IOException {
+        JournalService journal = new JournalService(directory.resolve("session"));
+        Buffer buffer = new Buffer("unnamed_file.java", "abc");
+        buffer.replace(journal, 0, 0, "x");
+        journal.rename("unnamed_file.java", "/src/A.java");
+        buffer.path = "/src/A.java";
+        buffer.replace(journal, 4, 0, "y");
+        journal.flush();
+
+        JournalService.RecoveredTab tab = restart(directory.resolve("session")).recover().getFirst();
+        assertEquals("/src/A.java", tab.path());
+        assertEquals("xabcy", tab.text());
+    }
+
+    @Test
+    void compactionKeepsTextAndShrinksJournal() throws IOException {
+        JournalService journal = new JournalService(directory.resolve("session"));
+        Buffer buffer = new Buffer("A.java", "");
+        for (int i = 0; i < 20_000; i++) {
+            buffer.replace(journal, buffer.text.length(), 0, "0123456789");
+            if (i % 1_000 == 0) buffer.replace(journal, 0, 5, ""); // Removals too
+        }
+        journal.flush();
+
+        Path file = journalFile(directory.resolve("session"));
+        assertTrue(Files.size(file) < buffer.text.length() + 70 * 1024, "journal of " + Files.size(file) + " bytes");
+        assertEquals(buffer.text.toString(), restart(directory.resolve("session")).recover().getFirst().text());
+    }
+
+    @Test
+    void discardDeletesJournalAndLock() throws IOException {
+        Path session = directory.resolve("session");
+        JournalService journal = new JournalService(session);
+        Buffer buffer = new Buffer("A.java", "abc");
+        buffer.replace(journal, 0, 0, "x");
+        journal.flush();
+        assertEquals(2, fileCount(session));
+
+        journal.discard("A.java");
+        journal.flush(); // Runs after the delete
+
+        assertEquals(0, fileCount(session));
+    }
+
+    @Test
+    void journalOfRunningEditorIsNotRecovered() throws IOException {
+        Path shared = directory.resolve("shared");
+        JournalService running = new JournalService(shared);
+        Buffer buffer = new Buffer("A.java", "abc");
+        buffer.replace(running, 0, 0, "x");
+        running.flush();
+
+        JournalService second = new JournalService(shared);
+        assertTrue(second.recover().isEmpty());
+        assertTrue(Files.exists(journalFile(shared)));
+
+        running.discard("A.java");
+        running.flush();
+        assertTrue(second.recover().isEmpty());
+        assertEquals(0, fileCount(shared));
+    }
+
+    @Test
+    void recoveredJournalStaysLockedUntilDiscarded() throws IOException {
+        JournalService first = new JournalService(directory.resolve("first"));
+        new Buffer("A.java", "abc").replace(first, 0, 0, "x");
+        first.flush();
+
+        Path copy = directory.resolve("first-restarted");
+        JournalService recovering = restart(directory.resolve("first"));
+        JournalService.RecoveredTab tab = recovering.recover().getFirst();
+        recovering.adopt(tab, "A.java");
+        assertTrue(new JournalService(copy).recover().isEmpty());
+
+        recovering.discard("A.java");
+        recovering.flush();
+        assertEquals(0, fileCount(copy));
+    }
+
+    // A new session over a copy of the journals, as after a crash, where no editor holds their locks anymore
+    private JournalService restart(Path session) throws IOException {
+        Path copy = directory.resolve(session.getFileName() + "-restarted");
+        Files.createDirectories(copy);
+        try (var files = Files.list(session)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".journal")).toList()) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return new JournalService(copy);
+    }
+
+    private static Path journalFile(Path session) throws IOException {
+        try (var files = Files.list(session)) {
+            return files.filter(f -> f.toString().endsWith(".journal")).findFirst().orElseThrow();
+        }
+    }
+
+    private static long fileCount(Path session) throws IOException {
+        try (var files = Files.list(session)) {
+            return files.count();
+        }
+    }
+
+    // A tab's text, journaled as the controller does for a dirty tab
+    private static class Buffer {
+        private String path;
+        private final StringBuilder text;
+
+        Buffer(String path, String text) {
+            this.path = path;
+            this.text = new StringBuilder(text);
+        }
+
+        void replace(JournalService journal, int position, int removedLength, String inserted) {
+            text.replace(position, position + removedLength, inserted);
+            journal.record(path, position, removedLength, inserted, text::toString);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.explement.jde.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NestingIndexTest {
+
+    private final JavaLexer lexer = new JavaLexer(new String[] { "class", "void", "if", "else" }, new String[] { "String" });
+
+    // An index of text lexed paragraph by paragraph, as the highlighting pipeline fills it
+    private NestingIndex index(String text) {
+        String[] lines = text.split("\n", -1);
+        NestingIndex index = new NestingIndex();
+        index.reset(lines.length);
+        NestingIndex.Collector collector = new NestingIndex.Collector();
+        int state = JavaLexer.STATE_DEFAULT;
+        int lineStart = 0;
+        for (String line : lines) {
+            collector.startParagraph(text, lineStart);
+            state = lexer.lex(text, lineStart, lineStart + line.length(), state, collector);
+            collector.endParagraph();
+            lineStart += line.length() + 1;
+        }
+        for (int i = 0; i < lines.length; i++) {
+            index.set(i, collector.getBrackets().get(i));
+        }
+        return index;
+    }
+
+    @Test
+    void matchesAcrossParagraphs() {
+        NestingIndex index = index("class A {\n    void f() {\n    }\n}");
+
+        NestingIndex.Match match = index.match(0, 8);
+        assertNotNull(match);
+        assertEquals(3, match.partnerParagraph());
+        assertEquals(0, match.partnerColumn());
+        assertTrue(match.sameKind());
+
+        NestingIndex.Match back = index.match(2, 4);
+        assertNotNull(back);
+        assertEquals(1, back.partnerParagraph());
+        assertEquals(13, back.partnerColumn());
+    }
+
+    @Test
+    void bracketsInStringsAndCommentsDoNotCount() {
+        NestingIndex index = index("f(\"(\", /* ) */\n')')");
+
+        NestingIndex.Match match = index.match(0, 1);
+        assertNotNull(match);
+        assertEquals(1, match.partnerParagraph());
+        assertEquals(3, match.partnerColumn());
+        assertNull(index.match(0, 3));
+    }
+
+    @Test
+    void mismatchedKindsStillPair() {
+        NestingIndex.Match match = index("a(b]").match(0, 1);
+        assertNotNull(match);
+        assertEquals(3, match.partnerColumn());
+        assertFalse(match.sameKind());
+    }
+
+    @Test
+    void unmatchedBracketHasNoPartner() {
+        NestingIndex index = index("f((x)\n)}");
+        assertEquals(1, index.match(0, 1).partnerParagraph());
+        assertNull(index.match(1, 1));
+        assertNull(index("f((x)").match(0, 1));
+    }
+
+    @Test
+    void foldEndOfBlocks() {
+        NestingIndex index = index("if (a) {\n    x();\n} else {\n    y();\n}\nz();");
+        assertEquals(2, index.foldEnd(0));
+        assertEquals(4, index.foldEnd(2)); // "} else {" folds the else block
+        assertEquals(-1, index.foldEnd(1));
+        assertEquals(-1, index.foldEnd(5));
+    }
+
+    @Test
+    void foldEndNeedsBlockClosedLater() {
+        assertEquals(-1, index("if (a) { x(); }").foldEnd(0));
+        assertEquals(-1, index("f(a,\n  b);").foldEnd(0)); // Only {} blocks fold
+    }
+
+    @Test
+    void incompleteIndexAnswersNothing() {
+        NestingIndex index = index("class A {\n}");
+        index.replace(1, 1, 2);
+
+        assertFalse(index.isComplete());
+        assertNull(index.match(0, 8));
+        assertEquals(-1, index.foldEnd(0));
+
+        index.set(1, new int[0]);
+        index.set(2, brackets("}"));
+        assertTrue(index.isComplete());
+        assertEquals(2, index.match(0, 8).partnerParagraph());
+    }
+
+    @Test
+    void randomEditsMatchStack() {
+        Random random = new Random(7);
+        List<String> document = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            document.add(randomLine(random));
+        }
+        NestingIndex index = new NestingIndex();
+        index.reset(document.size());
+        for (int i = 0; i < document.size(); i++) {
+            index.set(i, brackets(document.get(i)));
+        }
+
+        for (int edit = 0; edit < 2_000; edit++) {
+            int first = random.nextInt(document.size());
+            int removed = 1 + random.nextInt(Math.min(3, document.size() - first));
+            int inserted = random.nextBoolean() ? removed : 1 + random.nextInt(3);
+            for (int i = 0; i < removed; i++) {
+                document.remove(first);
+            }
+            for (int i = 0; i < inserted; i++) {
+                document.add(first, randomLine(random));
+            }
+            index.replace(first, removed, inserted);
+            for (int i = 0; i < inserted; i++) {
+                index.set(first + i, brackets(document.get(first + i)));
+            }
+
+            Map<Long, Long> partners = stackPartners(document);
+            for (int query = 0; query < 10; query++) {
+                int paragraph = random.nextInt(document.size());
+                String line = document.get(paragraph);
+                if (line.isEmpty()) continue;
+                int column = random.nextInt(line.length());
+
+                Long expected = partners.get((long) paragraph << 32 | column);
+                NestingIndex.Match match = index.match(paragraph, column);
+                if (expected == null) {
+                    assertNull(match, "edit " + edit + " at " + paragraph + ":" + column);
+                } else {
+                    assertNotNull(match, "edit " + edit + " at " + paragraph + ":" + column);
+                    assertEquals(expected, (long) match.partnerParagraph() << 32 | match.partnerColumn(), "edit " + edit + " at " + paragraph + ":" + column);
+                }
+            }
+        }
+    }
+
+    private static String randomLine(Random random) {
+        StringBuilder line = new StringBuilder();
+        int length = random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            line.append("(){}[]x ".charAt(random.nextInt(8)));
+        }
+        return line.toString();
+    }
+
+    // Brackets of a line without strings or comments, encoded as the Collector does
+    private static int[] brackets(String line) {
+        List<Integer> brackets = new ArrayList<>();
+        for (int i = 0; i < line.length(); i++) {
+            int kind = "()[]{}".indexOf(line.charAt(i));
+            if (kind >= 0) brackets.add(i << 3 | kind / 2 * 2 | kind % 2);
+        }
+        return brackets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Partner of every paired bracket, as paragraph << 32 | column, pairing by depth whatever the kinds
+    private static Map<Long, Long> stackPartners(List<String> document) {
+        Map<Long, Long> partners = new HashMap<>();
+        Deque<Long> open = new ArrayDeque<>();
+        for (int paragraph = 0; paragraph < document.size(); paragraph++) {
+            String line = document.get(paragraph);
+            for (int column = 0; column < line.length(); column++) {
+                char c = line.charAt(column);
+                long position = (long) paragraph << 32 | column;
+                if ("([{".indexOf(c) >= 0) {
+                    open.push(position);
+                } else if (")]}".indexOf(c) >= 0 && !open.isEmpty()) {
+                    long partner = open.pop();
+                    partners.put(partner, position);
+                    partners.put(position, partner);
+                }
+            }
+        }
+        return partners;
+    }
+}
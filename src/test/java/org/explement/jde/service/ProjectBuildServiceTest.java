@@ -0,0 +1,139 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.ProjectBuildResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectBuildServiceTest {
+
+    @TempDir
+    Path directory;
+
+    // Distinct mtimes, so a rewrite is seen whatever the file system's timestamp resolution
+    private long clock = 1_000_000_000_000L;
+
+    @Test
+    void editRecompilesSubtypesAndUsersOnly() throws IOException {
+        Path root = project();
+        write(root, "A.java", "class A { int value() { return 1; } }");
+        write(root, "B.java", "class B extends A {}");
+        write(root, "E.java", "class E extends B {}"); // Never names A
+        write(root, "C.java", "class C { A a; }");
+        write(root, "D.java", "class D { int d; }");
+        ProjectBuildService service = service();
+
+        assertBuilt(5, build(service, root));
+        assertBuilt(0, build(service, root));
+
+        write(root, "A.java", "class A { int value() { return 2; } }");
+        assertBuilt(4, build(service, root)); // A, B and E as subtypes, C by name
+        assertBuilt(0, build(service, root));
+    }
+
+    @Test
+    void classReferenceWithoutNameIsRecompiled() throws IOException {
+        Path root = project();
+        write(root, "A.java", "class A {}");
+        write(root, "Factory.java", "class Factory { static A make() { return new A(); } }");
+        write(root, "G.java", "class G { Object o = Factory.make(); }"); // Only its class file mentions A
+        write(root, "D.java", "class D {}");
+        ProjectBuildService service = service();
+        assertBuilt(4, build(service, root));
+
+        write(root, "A.java", "class A { int added; }");
+        assertBuilt(3, build(service, root)); // A, Factory by name, G by reference
+    }
+
+    @Test
+    void removedSourceFailsItsUsersUntilRestored() throws IOException {
+        Path root = project();
+        write(root, "A.java", "class A {}");
+        write(root, "C.java", "class C { A a; }");
+        write(root, "D.java", "class D {}");
+        ProjectBuildService service = service();
+        assertBuilt(3, build(service, root));
+
+        Files.delete(root.resolve("A.java"));
+        ProjectBuildResult broken = build(service, root);
+        assertFalse(broken.success());
+        assertEquals(1, broken.compiledFiles()); // C, whose A is hidden from javac
+
+        write(root, "A.java", "class A { int restored; }");
+        assertBuilt(2, build(service, root));
+
+        Files.delete(root.resolve("D.java"));
+        ProjectBuildResult removed = build(service, root);
+        assertBuilt(0, removed);
+        assertEquals(2, removed.sourceFiles());
+        assertFalse(removed.classes().containsKey("D"));
+        assertTrue(removed.classes().containsKey("A"));
+    }
+
+    @Test
+    void bufferIsBuiltInsteadOfTheFileAndReadBackAfter() throws IOException {
+        Path root = project();
+        write(root, "A.java", "class A {}");
+        write(root, "C.java", "class C { int x = new A().two(); }");
+        ProjectBuildService service = service();
+
+        Map<String, String> buffers = Map.of(root.resolve("A.java").toString(), "class A { int two() { return 2; } }");
+        assertBuilt(2, service.build(root, buffers).join());
+        assertBuilt(0, service.build(root, buffers).join());
+
+        ProjectBuildResult fromDisk = build(service, root); // The buffer was never saved
+        assertFalse(fromDisk.success());
+        assertEquals(2, fromDisk.compiledFiles());
+    }
+
+    @Test
+    void stateIsReloadedByTheNextSession() throws IOException {
+        Path root = project();
+        write(root, "A.java", "class A {}");
+        write(root, "B.java", "class B extends A {}");
+        write(root, "Main.java", "class Main { public static void main(String[] args) {} }");
+        assertBuilt(3, build(service(), root));
+
+        ProjectBuildService next = service();
+        ProjectBuildResult reloaded = build(next, root);
+        assertBuilt(0, reloaded);
+        assertEquals(List.of("Main"), reloaded.mainClasses());
+        assertEquals(3, reloaded.classes().size());
+
+        write(root, "A.java", "class A { int changed; }");
+        assertBuilt(2, build(next, root)); // Dependencies came back with the state
+    }
+
+    private Path project() throws IOException {
+        return Files.createDirectories(directory.resolve("project"));
+    }
+
+    private ProjectBuildService service() {
+        return new ProjectBuildService(directory.resolve("build"), new FileIOService(), new SyntaxHighlighterService());
+    }
+
+    private static ProjectBuildResult build(ProjectBuildService service, Path root) {
+        return service.build(root, Map.of()).join();
+    }
+
+    private void write(Path root, String path, String text) throws IOException {
+        Path file = Files.writeString(root.resolve(path), text);
+        clock += 10_000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(clock));
+    }
+
+    private static void assertBuilt(int compiledFiles, ProjectBuildResult result) {
+        assertTrue(result.success(), result.diagnostics().toString());
+        assertEquals(compiledFiles, result.compiledFiles(), result.toString());
+    }
+}
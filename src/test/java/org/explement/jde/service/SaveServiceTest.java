@@ -0,0 +1,81 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.FileFormat;
+import org.explement.jde.model.FileState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SaveServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void coalescedSaveIsSupersededAndOnlyTheWriterRebaselines() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Path blocker = directory.resolve("Blocker.java");
+        FileIOService fileIOService = new FileIOService() {
+            @Override
+            public void writeAtomically(Path target, String content, FileFormat format) throws IOException {
+                if (target.equals(blocker)) { // Holds the save thread so the next two saves coalesce
+                    writing.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.writeAtomically(target, content, format);
+            }
+        };
+        SaveService saveService = new SaveService(fileIOService);
+        saveService.save(blocker, "x", FileFormat.DEFAULT);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        Path file = directory.resolve("A.java");
+        FileState fileState = new FileState("");
+        StringBuilder text = new StringBuilder();
+        List<String> rebaselined = Collections.synchronizedList(new ArrayList<>());
+
+        text.append("A");
+        fileState.edit(0, 1, text.length(), text::substring);
+        CompletableFuture<Boolean> first = saveAndRebaseline(saveService, file, text.toString(), fileState, rebaselined);
+        text.append("B");
+        fileState.edit(1, 1, text.length(), text::substring);
+        CompletableFuture<Boolean> second = saveAndRebaseline(saveService, file, text.toString(), fileState, rebaselined);
+        release.countDown();
+
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertFalse(first.get(5, TimeUnit.SECONDS));
+        assertEquals("AB", Files.readString(file));
+        assertEquals(List.of("AB"), rebaselined);
+        assertFalse(fileState.isDirty());
+    }
+
+    // The controller's callback: only the save that wrote the file marks its text as saved
+    private static CompletableFuture<Boolean> saveAndRebaseline(SaveService saveService, Path file, String text, FileState fileState, List<String> rebaselined) {
+        long version = fileState.getEditVersion();
+        return saveService.save(file, text, FileFormat.DEFAULT).whenComplete((written, error) -> {
+            if (error != null || !written) return;
+            synchronized (fileState) {
+                fileState.markSaved(text, version);
+            }
+            rebaselined.add(text);
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.FileState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TabCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void leastRecentlyUsedCleanTabIsEvictedAndReloaded() throws IOException {
+        String a = file("A.java", "a".repeat(50));
+        String b = file("B.java", "b".repeat(50));
+        String c = file("C.java", "c".repeat(50));
+        TabCache cache = new TabCache(250, new FileIOService()); // Room for two 100 byte texts
+        for (String path : new String[] { a, b, c }) {
+            cache.put(path, new FileState(Files.readString(Path.of(path))));
+        }
+
+        cache.store(a, "a".repeat(50));
+        cache.store(b, "b".repeat(50));
+        cache.get(a); // A is now used more recently than B
+        cache.store(c, "c".repeat(50));
+
+        TabCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.evictions());
+        assertEquals(200, stats.memoryUsed());
+        assertEquals("a".repeat(50), cache.peek(a));
+        assertNull(cache.peek(b));
+
+        Files.writeString(Path.of(b), "changed on disk");
+        assertEquals("changed on disk", cache.take(b)); // Reloaded, and the new text is the baseline
+        assertFalse(cache.get(b).isDirty());
+        assertEquals("a".repeat(50), cache.take(a));
+        assertEquals(1, cache.getStats().hits());
+        assertEquals(1, cache.getStats().misses());
+    }
+
+    @Test
+    void cleanTabIsDroppedBeforeDirtyTabIsCompressed() throws IOException {
+        String clean = file("Clean.java", "c".repeat(50));
+        TabCache cache = new TabCache(250, new FileIOService());
+        cache.put("unnamed_file.java", dirty("d".repeat(50)));
+        cache.put(clean, new FileState("c".repeat(50)));
+
+        cache.store("unnamed_file.java", "d".repeat(50)); // Least recently used, but dirty
+        cache.store(clean, "c".repeat(50));
+        cache.put("unnamed_file1.java", dirty("e".repeat(50)));
+        cache.store("unnamed_file1.java", "e".repeat(50));
+
+        TabCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.evictions());
+        assertEquals(0, stats.compressions());
+        assertEquals("d".repeat(50), cache.peek("unnamed_file.java"));
+    }
+
+    @Test
+    void compressedTabRoundTrips() {
+        String text = "class A { String s = \"é ✓ 😀\"; }\r\n".repeat(500);
+        TabCache cache = new TabCache(text.length() * 3L, new FileIOService()); // Two texts do not fit
+        cache.put("unnamed_file.java", dirty(text));
+        cache.put("unnamed_file1.java", dirty(text + "1"));
+
+        cache.store("unnamed_file.java", text);
+        cache.store("unnamed_file1.java", text + "1");
+
+        TabCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.compressions());
+        assertEquals(0, stats.spills());
+        assertTrue(stats.memoryUsed() <= stats.memoryBudget());
+        assertEquals(text, cache.peek("unnamed_file.java"));
+        assertEquals(text, cache.take("unnamed_file.java"));
+        assertTrue(cache.get("unnamed_file.java").isDirty());
+        assertEquals(text.length() * 2L + 2, cache.getStats().memoryUsed()); // Only the other tab's text is left
+    }
+
+    @Test
+    void spilledTabRoundTrips() {
+        String text = "int x = 1; // é ✓\n".repeat(2_000);
+        TabCache cache = new TabCache(16, new FileIOService()); // Not even compressed text fits
+        cache.put("unnamed_file.java", dirty(text));
+        cache.put("unnamed_file1.java", dirty(text + "1"));
+
+        cache.store("unnamed_file.java", text);
+        cache.store("unnamed_file1.java", text + "1");
+
+        TabCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.compressions());
+        assertEquals(2, stats.spills());
+        assertEquals(0, stats.memoryUsed());
+        assertEquals(text, cache.peek("unnamed_file.java"));
+        assertEquals(text + "1", cache.take("unnamed_file1.java"));
+        assertEquals(text, cache.take("unnamed_file.java"));
+        assertEquals(2, cache.getStats().misses());
+        assertTrue(cache.get("unnamed_file.java").isDirty());
+    }
+
+    private String file(String name, String text) throws IOException {
+        return Files.writeString(directory.resolve(name), text).toString();
+    }
+
+    // A tab whose whole text was typed since it was saved empty
+    private static FileState dirty(String text) {
+        FileState state = new FileState("");
+        state.edit(0, text.length(), text.length(), text::substring);
+        return state;
+    }
+}
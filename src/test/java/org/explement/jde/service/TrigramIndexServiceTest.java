@@ -0,0 +1,155 @@
+package org.explement.jde.service;
+
+import org.explement.jde.model.SearchHit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrigramIndexServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void literalNeedsAllItsTrigrams() {
+        assertRequired("ArrayList", "ArrayList");
+    }
+
+    @Test
+    void alternativesAreSeparateBranches() {
+        assertRequired("foo|bars", "foo", "bars");
+    }
+
+    @Test
+    void groupsDoNotSplitBranches() {
+        assertRequired("(a|b)xyz", "xyz");
+    }
+
+    @Test
+    void wildcardsAndClassesEndLiterals() {
+        assertRequired("get\\w+Name", "get\nName");
+        assertRequired("[abc]def.ghi", "def\nghi");
+        assertRequired("a.*b", "");
+    }
+
+    @Test
+    void optionalCharIsNotRequired() {
+        assertRequired("ab?cde", "cde");
+        assertRequired("abcd{2}efg", "abc\nefg");
+    }
+
+    @Test
+    void escapedPunctuationIsLiteral() {
+        assertRequired("Map\\.of", "Map.of");
+    }
+
+    @Test
+    void hexEscapeIsSkippedWhole() {
+        assertRequired("\\x41BCD", "BCD");
+        assertRequired("\\x{41}BCD", "BCD");
+    }
+
+    @Test
+    void unicodeEscapeIsSkippedWhole() {
+        assertRequired("\\u00e9tat", "tat");
+    }
+
+    @Test
+    void octalEscapeIsSkippedWhole() {
+        assertRequired("\\0101abc", "abc");
+        assertRequired("\\0477abc", "7abc");
+    }
+
+    @Test
+    void propertyAndBackReferenceAreSkippedWhole() {
+        assertRequired("\\p{Lu}abc", "abc");
+        assertRequired("(x)\\12abc", "abc");
+    }
+
+    @Test
+    void quotedTextDoesNotNarrow() {
+        assertRequired("\\Qa|bcd\\E", "");
+    }
+
+    @Test
+    void commentsModeDoesNotNarrow() {
+        assertRequired("(?x)foo bar", "");
+        assertRequired("(?x)foo#c\nbar", "");
+        assertRequired("abc(?x:d e)", "");
+    }
+
+    @Test
+    void unicodeCaseDoesNotNarrow() {
+        assertRequired("(?iu)état", "");
+        assertRequired("(?U)\\w+abc", "");
+        assertRequired("(?i)abcd", "abcd"); // ASCII folding is what fold() does
+        assertRequired("(?-x)abc", "abc");
+    }
+
+    @Test
+    void inlineFlagsFindWhatPatternMatches() throws IOException {
+        Path root = Files.createDirectories(directory.resolve("project"));
+        Files.writeString(root.resolve("A.java"), "class A {\n    int foobar;\n    // ÉTAT\n}\n");
+        TrigramIndexService service = new TrigramIndexService(directory.resolve("cache"), new FileIOService());
+        service.open(root).join();
+
+        assertEquals(2, service.search("(?x)foo bar", 10).getFirst().line());
+        assertEquals(2, service.search("(?x)foo#c\nbar", 10).getFirst().line());
+        assertEquals(3, service.search("(?iu)état", 10).getFirst().line());
+    }
+
+    @Test
+    void fileChangedByAnotherProgramIsFoundAfterSweep() throws IOException, InterruptedException {
+        Path root = Files.createDirectories(directory.resolve("project"));
+        Path file = Files.writeString(root.resolve("A.java"), "class A {}\n");
+        TrigramIndexService service = new TrigramIndexService(directory.resolve("cache"), new FileIOService());
+        service.open(root).join();
+
+        Files.writeString(file, "class A { int counter; }\n");
+
+        List<SearchHit> hits = awaitHits(service, "counter");
+        assertEquals(1, hits.size());
+        assertEquals(file, hits.getFirst().file());
+    }
+
+    @Test
+    void refreshAddsNewFile() throws IOException, InterruptedException {
+        Path root = Files.createDirectories(directory.resolve("project"));
+        Files.writeString(root.resolve("A.java"), "class A {}\n");
+        TrigramIndexService service = new TrigramIndexService(directory.resolve("cache"), new FileIOService());
+        service.open(root).join();
+        service.search("class", 10); // Starts this interval's sweep
+        service.open(root).join(); // Runs after it
+
+        Path added = Files.writeString(root.resolve("B.java"), "class B { int counter; }\n");
+        service.refresh(added);
+
+        assertEquals(added, awaitHits(service, "counter").getFirst().file());
+    }
+
+    // Hits once the index thread has caught up, the search itself never waits for it
+    private static List<SearchHit> awaitHits(TrigramIndexService service, String regex) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        List<SearchHit> hits = service.search(regex, 10);
+        while (hits.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            hits = service.search(regex, 10);
+        }
+        return hits;
+    }
+
+    private static void assertRequired(String regex, String... branchLiterals) {
+        int[][] required = TrigramIndexService.requiredTrigrams(regex);
+        assertEquals(branchLiterals.length, required.length);
+        for (int i = 0; i < required.length; i++) {
+            assertArrayEquals(TrigramIndexService.trigrams(branchLiterals[i]), required[i], regex + " branch " + i);
+        }
+    }
+}